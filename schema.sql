@@ -1,5 +1,15 @@
 -- Protocol: PostgreSQL
 -- Create tables for VisiBoard Admin
+--
+-- Reference snapshot of the current schema. The app does not run this file: it applies the
+-- versioned scripts in src/main/resources/com/visiboard/pc/db/migration (see SchemaMigrator).
+-- Keep this file in step with the latest migration.
+
+CREATE TABLE IF NOT EXISTS schema_version (
+    version INT PRIMARY KEY,
+    description VARCHAR(255) NOT NULL,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
 
 CREATE TABLE IF NOT EXISTS users (
     user_id VARCHAR(255) PRIMARY KEY,
@@ -13,7 +23,10 @@ CREATE TABLE IF NOT EXISTS users (
     restriction_expiry BIGINT,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    synced_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    synced_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    total_likes_received INT DEFAULT 0,
+    followers_count INT DEFAULT 0,
+    following_count INT DEFAULT 0
 );
 
 CREATE TABLE IF NOT EXISTS notes (
@@ -36,6 +49,8 @@ CREATE TABLE IF NOT EXISTS reports (
     reporter_id VARCHAR(255), -- Not strictly enforcing FK if reporter is deleted, or sync order issues
     reported_user_id VARCHAR(255),
     reported_note_id VARCHAR(255), -- Nullable if reporting a user profile
+    category VARCHAR(100),
+    description TEXT,
     reason TEXT,
     target_details TEXT,
     type VARCHAR(50),
@@ -47,9 +62,46 @@ CREATE TABLE IF NOT EXISTS reports (
 CREATE TABLE IF NOT EXISTS notifications (
     notification_id VARCHAR(255) PRIMARY KEY,
     user_id VARCHAR(255),
-    type VARCHAR(50),
     message TEXT,
-    timestamp BIGINT,
+    type VARCHAR(50),
     is_read BOOLEAN DEFAULT FALSE,
-    synced_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    created_at BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS sync_state (
+    collection VARCHAR(100) PRIMARY KEY,
+    high_water_mark BIGINT DEFAULT 0, -- epoch millis of the newest updatedAt/timestamp seen
+    is_timestamp BOOLEAN DEFAULT TRUE, -- Firestore field type (Timestamp vs Long millis)
+    last_synced_at TIMESTAMP,
+    last_full_sync_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_notes_user_created ON notes (user_id, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_notes_created_id ON notes (created_at DESC, note_id DESC);
+CREATE INDEX IF NOT EXISTS idx_users_created_id ON users (created_at DESC, user_id DESC);
+CREATE INDEX IF NOT EXISTS idx_reports_timestamp_id ON reports (timestamp DESC, report_id DESC);
+CREATE INDEX IF NOT EXISTS idx_reports_reported_note ON reports (reported_note_id);
+CREATE INDEX IF NOT EXISTS idx_notifications_user_created ON notifications (user_id, created_at);
+
+-- Dashboard rollup; kept up to date by triggers on users/notes/reports (see migration V5)
+CREATE TABLE IF NOT EXISTS daily_stats (
+    day DATE NOT NULL,
+    metric VARCHAR(32) NOT NULL, -- users_joined, notes_created, likes, reports_filed, reports_resolved
+    value BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, metric)
+);
+
+-- Pending Postgres -> Firestore writes, drained by OutboxDispatcher (see migration V6)
+CREATE TABLE IF NOT EXISTS firestore_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    collection VARCHAR(100) NOT NULL,
+    document_id VARCHAR(255) NOT NULL,
+    operation VARCHAR(10) NOT NULL CHECK (operation IN ('SET', 'UPDATE', 'DELETE')),
+    payload JSONB,
+    created_at BIGINT NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at BIGINT NOT NULL,
+    last_error TEXT
 );
+CREATE INDEX IF NOT EXISTS idx_firestore_outbox_due ON firestore_outbox (next_attempt_at, id);
+CREATE INDEX IF NOT EXISTS idx_firestore_outbox_document ON firestore_outbox (collection, document_id, id);
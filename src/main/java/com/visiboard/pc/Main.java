@@ -14,9 +14,11 @@ public class Main extends Application {
         // Initialize Database and Sync Services
         try {
             com.visiboard.pc.services.DatabaseService.initializeDatabase();
-            new Thread(() -> {
+            com.visiboard.pc.services.OutboxDispatcher.start();
+            com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
                 com.visiboard.pc.services.SyncService.performInitialSync();
-            }).start();
+                com.visiboard.pc.services.SyncService.startLiveSync();
+            });
         } catch (Exception e) {
             System.err.println("Failed to initialize services: " + e.getMessage());
             e.printStackTrace();
@@ -42,6 +44,14 @@ public class Main extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        com.visiboard.pc.services.SyncService.stopLiveSync();
+        com.visiboard.pc.services.OutboxDispatcher.stop();
+        com.visiboard.pc.service.ImageCacheService.shutdown();
+        com.visiboard.pc.util.ConcurrencyManager.shutdown();
+    }
+
     public static void main(String[] args) {
         launch();
     }
@@ -39,6 +39,12 @@ public class AdminPanelController {
     @FXML private javafx.scene.layout.VBox viewUsers;
     @FXML private javafx.scene.layout.VBox viewMap; // Placeholder for Map container
 
+    // Background loads per view; hiding a view cancels whatever it still has in flight
+    private final com.visiboard.pc.util.TaskScope analyticsScope = new com.visiboard.pc.util.TaskScope("Analytics");
+    private final com.visiboard.pc.util.TaskScope reportsScope = new com.visiboard.pc.util.TaskScope("Reports");
+    private final com.visiboard.pc.util.TaskScope usersScope = new com.visiboard.pc.util.TaskScope("Users");
+    private MapController mapController;
+
     @FXML
     private void initialize() {
         // Set admin name 
@@ -51,6 +57,11 @@ public class AdminPanelController {
             logoutButton.setOnAction(event -> handleLogout());
         }
         
+        noteReportsSource.setScope(reportsScope);
+        userReportsSource.setScope(reportsScope);
+        reportGroupsSource.setScope(reportsScope);
+        usersSource.setScope(usersScope);
+
         // Initialize Nav Buttons List
         navButtons = java.util.Arrays.asList(navAnalytics, navReports, navUsers, navMap);
         
@@ -66,6 +77,9 @@ public class AdminPanelController {
         // Default View
         showView(viewAnalytics, navAnalytics);
         loadAnalytics(); // Initial load
+
+        // Live sync pushes committed Firestore changes; patch the open lists instead of reloading them
+        com.visiboard.pc.services.SyncService.addChangeListener(syncChangeListener);
         
         System.out.println("Admin Panel initialized");
     }
@@ -100,6 +114,12 @@ public class AdminPanelController {
             }
         }
         
+        // Drop loads for the views being hidden; showing a view again reloads it
+        if (view != viewAnalytics) analyticsScope.cancelAll();
+        if (view != viewReports) reportsScope.cancelAll();
+        if (view != viewUsers) usersScope.cancelAll();
+        if (view != viewMap && mapController != null) mapController.cancelLoads();
+
         // Toggle Views
         if (viewAnalytics != null) viewAnalytics.setVisible(false);
         if (viewReports != null) viewReports.setVisible(false);
@@ -113,11 +133,18 @@ public class AdminPanelController {
     }
     
     @FXML private Button refreshAnalyticsButton;
+    @FXML private javafx.scene.control.ComboBox<String> analyticsRangeComboBox;
+    @FXML private Label activityChartTitle;
 
     private void setupAnalytics() {
         if (refreshAnalyticsButton != null) {
             refreshAnalyticsButton.setOnAction(e -> loadAnalytics());
         }
+        if (analyticsRangeComboBox != null) {
+            analyticsRangeComboBox.getItems().addAll("7 days", "30 days", "90 days");
+            analyticsRangeComboBox.setValue("7 days");
+            analyticsRangeComboBox.setOnAction(e -> loadAnalytics());
+        }
     }
     
     private void setupReports() {
@@ -136,8 +163,9 @@ public class AdminPanelController {
         }
 
         if (userSearchField != null) {
+            userSearchDebounce.setOnFinished(e -> filterUsers(userSearchField.getText()));
             userSearchField.textProperty().addListener((observable, oldValue, newValue) -> {
-                filterUsers(newValue);
+                userSearchDebounce.playFromStart();
             });
         }
         if (refreshUsersButton != null) {
@@ -146,6 +174,11 @@ public class AdminPanelController {
     }
 
     private void handleLogout() {
+        com.visiboard.pc.services.SyncService.removeChangeListener(syncChangeListener);
+        com.visiboard.pc.services.ModerationInbox.getInstance().removeListener(inboxListener);
+        analyticsScope.close();
+        reportsScope.close();
+        usersScope.close();
         try {
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("view/admin_login_view.fxml"));
             Scene scene = new Scene(loader.load(), 800, 600);
@@ -170,53 +203,444 @@ public class AdminPanelController {
     private javafx.scene.control.ListView<com.visiboard.pc.model.Report> reportsListViewUsers;
     @FXML
     private Button refreshReportsButton;
+    @FXML private javafx.scene.control.TabPane reportsSubTabPane;
+    @FXML private Label bulkSelectionLabel;
+    @FXML private Button bulkDismissButton;
+    @FXML private Button bulkWarnButton;
+    @FXML private Button bulkDeleteNotesButton;
+    @FXML private Button bulkBanButton;
+    @FXML private javafx.scene.control.ProgressBar bulkProgressBar;
+    @FXML private Label bulkProgressLabel;
+    private boolean bulkJobRunning = false;
+
+    // Grouped view: one row per reported note or user, aggregated in SQL
+    @FXML private javafx.scene.control.ListView<com.visiboard.pc.model.ReportGroup> reportGroupsListView;
+    @FXML private javafx.scene.control.ComboBox<String> reportGroupTypeComboBox;
+    private static final String GROUPS_NOTES = "Reported Notes";
+    private static final String GROUPS_USERS = "Reported Users";
+    private volatile boolean groupNoteTargets = true;
+    private final com.visiboard.pc.ui.PagedListSource<com.visiboard.pc.model.ReportGroup> reportGroupsSource =
+            new com.visiboard.pc.ui.PagedListSource<>((prev, size) -> com.visiboard.pc.services.DatabaseService.getReportGroupsPage(
+                    groupNoteTargets, prev == null ? null : (Long) prev.getAfterKey(), prev == null ? null : prev.getAfterId(), size));
     
-    // Split lists
-    private javafx.collections.ObservableList<com.visiboard.pc.model.Report> noteReportsList = javafx.collections.FXCollections.observableArrayList();
-    private javafx.collections.ObservableList<com.visiboard.pc.model.Report> userReportsList = javafx.collections.FXCollections.observableArrayList();
+    // Split lists, paged in newest first as the lists scroll
+    private final com.visiboard.pc.ui.PagedListSource<com.visiboard.pc.model.Report> noteReportsSource =
+            new com.visiboard.pc.ui.PagedListSource<>((prev, size) -> com.visiboard.pc.services.DatabaseService.getReportsPage(
+                    true, prev == null ? null : (Long) prev.getAfterKey(), prev == null ? null : prev.getAfterId(), size));
+    private final com.visiboard.pc.ui.PagedListSource<com.visiboard.pc.model.Report> userReportsSource =
+            new com.visiboard.pc.ui.PagedListSource<>((prev, size) -> com.visiboard.pc.services.DatabaseService.getReportsPage(
+                    false, prev == null ? null : (Long) prev.getAfterKey(), prev == null ? null : prev.getAfterId(), size));
+    // Priority inbox: the most urgent pending reports of both kinds, ranked in memory by ModerationInbox
+    @FXML private javafx.scene.control.ListView<com.visiboard.pc.model.Report> priorityListView;
+    @FXML private Label priorityInboxLabel;
+    private static final int PRIORITY_INBOX_SIZE = 200;
+    private final java.util.concurrent.atomic.AtomicBoolean priorityRefreshQueued = new java.util.concurrent.atomic.AtomicBoolean();
+    // A burst of sync deltas queues one refresh, not one per delta
+    private final Runnable inboxListener = () -> {
+        if (priorityRefreshQueued.compareAndSet(false, true)) {
+            javafx.application.Platform.runLater(this::refreshPriorityInbox);
+        }
+    };
+    private javafx.collections.ObservableList<com.visiboard.pc.model.Report> noteReportsList = noteReportsSource.getItems();
+    private javafx.collections.ObservableList<com.visiboard.pc.model.Report> userReportsList = userReportsSource.getItems();
+    private boolean reportListsReady = false;
 
     public void loadReports() {
         System.out.println("Loading reports...");
+        if (!reportListsReady) {
+            if (reportsListViewNotes != null) {
+                reportsListViewNotes.setPlaceholder(new Label("No reports to handle"));
+                noteReportsSource.attach(reportsListViewNotes);
+                setupReportList(reportsListViewNotes);
+            }
+            if (reportsListViewUsers != null) {
+                reportsListViewUsers.setPlaceholder(new Label("No reports to handle"));
+                userReportsSource.attach(reportsListViewUsers);
+                setupReportList(reportsListViewUsers);
+            }
+            noteReportsSource.setOnPageLoaded(this::onReportsPageLoaded);
+            userReportsSource.setOnPageLoaded(this::onReportsPageLoaded);
+            noteReportsSource.setOnLoadFailed(this::onReportsPageFailed);
+            userReportsSource.setOnLoadFailed(this::onReportsPageFailed);
+            reportGroupsSource.setOnLoadFailed(this::onReportsPageFailed);
+            if (priorityListView != null) {
+                priorityListView.setPlaceholder(new Label("No reports to handle"));
+                setupReportList(priorityListView);
+                com.visiboard.pc.services.ModerationInbox.getInstance().addListener(inboxListener);
+                com.visiboard.pc.util.ConcurrencyManager.io().submit(() -> com.visiboard.pc.services.ModerationInbox.getInstance().start());
+            }
+            setupBulkActions();
+            setupReportGroups();
+            reportListsReady = true;
+        }
+
         if (refreshReportsButton != null) refreshReportsButton.setDisable(true);
-        
-        new Thread(() -> {
-            java.util.List<com.visiboard.pc.model.Report> reports = com.visiboard.pc.services.DatabaseService.getAllReports();
-            
+        noteReportsSource.reset();
+        userReportsSource.reset();
+        if (reportGroupsListView != null) reportGroupsSource.reset();
+    }
+
+    private void setupBulkActions() {
+        for (javafx.scene.control.ListView<com.visiboard.pc.model.Report> listView : java.util.Arrays.asList(reportsListViewNotes, reportsListViewUsers, priorityListView)) {
+            if (listView == null) continue;
+            listView.getSelectionModel().setSelectionMode(javafx.scene.control.SelectionMode.MULTIPLE);
+            listView.getSelectionModel().getSelectedItems().addListener(
+                    (javafx.collections.ListChangeListener<com.visiboard.pc.model.Report>) change -> updateBulkSelection());
+        }
+        if (reportsSubTabPane != null) {
+            reportsSubTabPane.getSelectionModel().selectedIndexProperty().addListener((obs, oldIndex, newIndex) -> updateBulkSelection());
+        }
+        if (bulkDismissButton != null) bulkDismissButton.setOnAction(e -> handleBulkAction(com.visiboard.pc.services.ModerationService.Action.DISMISS, "Dismiss"));
+        if (bulkWarnButton != null) bulkWarnButton.setOnAction(e -> handleBulkAction(com.visiboard.pc.services.ModerationService.Action.WARN, "Warn"));
+        if (bulkDeleteNotesButton != null) bulkDeleteNotesButton.setOnAction(e -> handleBulkAction(com.visiboard.pc.services.ModerationService.Action.DELETE_NOTE, "Delete Notes"));
+        if (bulkBanButton != null) bulkBanButton.setOnAction(e -> handleBulkAction(com.visiboard.pc.services.ModerationService.Action.BAN, "Ban"));
+        updateBulkSelection();
+    }
+
+    // The report list on the visible tab (null on the grouped tab); selections on hidden tabs are not acted on
+    private javafx.scene.control.ListView<com.visiboard.pc.model.Report> visibleReportList() {
+        int tab = reportsSubTabPane != null ? reportsSubTabPane.getSelectionModel().getSelectedIndex() : 0;
+        if (tab == 1) return reportsListViewUsers;
+        if (tab == 3) return priorityListView;
+        return tab == 0 ? reportsListViewNotes : null;
+    }
+
+    // Shows the head of the inbox, keeping the selection of reports that are still in it
+    private void refreshPriorityInbox() {
+        priorityRefreshQueued.set(false);
+        if (priorityListView == null) return;
+        com.visiboard.pc.services.ModerationInbox inbox = com.visiboard.pc.services.ModerationInbox.getInstance();
+        java.util.Set<String> selectedIds = new java.util.HashSet<>();
+        for (com.visiboard.pc.model.Report r : priorityListView.getSelectionModel().getSelectedItems()) {
+            selectedIds.add(r.getReportId());
+        }
+
+        java.util.List<com.visiboard.pc.model.Report> top = inbox.top(PRIORITY_INBOX_SIZE);
+        priorityListView.getItems().setAll(top);
+        for (int i = 0; i < top.size(); i++) {
+            if (selectedIds.contains(top.get(i).getReportId())) priorityListView.getSelectionModel().select(i);
+        }
+        if (priorityInboxLabel != null) {
+            int total = inbox.size();
+            priorityInboxLabel.setText(total > top.size() ? "Top " + top.size() + " of " + total + " pending reports, most urgent first"
+                                                           : total + " pending reports, most urgent first");
+        }
+    }
+
+    private java.util.List<com.visiboard.pc.model.Report> selectedReports() {
+        javafx.scene.control.ListView<com.visiboard.pc.model.Report> listView = visibleReportList();
+        return listView == null ? java.util.Collections.emptyList() : new java.util.ArrayList<>(listView.getSelectionModel().getSelectedItems());
+    }
+
+    private void updateBulkSelection() {
+        java.util.List<com.visiboard.pc.model.Report> selected = selectedReports();
+        int count = selected.size();
+        if (bulkSelectionLabel != null) bulkSelectionLabel.setText(count == 0 ? "No reports selected" : count + " selected");
+        for (Button button : java.util.Arrays.asList(bulkDismissButton, bulkWarnButton, bulkDeleteNotesButton, bulkBanButton)) {
+            if (button != null) button.setDisable(bulkJobRunning || count == 0);
+        }
+        // Delete Notes only applies when every selected report points at a note (the Priority Inbox mixes both kinds)
+        if (bulkDeleteNotesButton != null && selected.stream().anyMatch(r -> r.getReportedNoteId() == null || r.getReportedNoteId().isEmpty())) {
+            bulkDeleteNotesButton.setDisable(true);
+        }
+    }
+
+    private void handleBulkAction(com.visiboard.pc.services.ModerationService.Action action, String label) {
+        java.util.List<com.visiboard.pc.model.Report> reports = selectedReports();
+        if (reports.isEmpty() || bulkJobRunning) return;
+
+        long expiry = 0;
+        if (action.needsExpiry()) {
+            expiry = showDurationDialog(label);
+            if (expiry == -1) return;
+        }
+
+        javafx.scene.control.Alert confirm = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("Bulk Moderation");
+        confirm.setHeaderText(label + " " + reports.size() + " report(s)?");
+        confirm.setContentText("The action is applied to every selected report and both parties are notified.");
+        if (confirm.showAndWait().orElse(javafx.scene.control.ButtonType.CANCEL) != javafx.scene.control.ButtonType.OK) return;
+
+        bulkJobRunning = true;
+        updateBulkSelection();
+        showBulkProgress(0, 0, reports.size());
+
+        com.visiboard.pc.services.ModerationQueue.submit(action, reports, expiry,
+                (processed, failed, total) -> javafx.application.Platform.runLater(() -> showBulkProgress(processed, failed, total)))
+            .whenComplete((result, error) -> javafx.application.Platform.runLater(() -> {
+                bulkJobRunning = false;
+                hideBulkProgress();
+                loadReports();
+                if (action == com.visiboard.pc.services.ModerationService.Action.BAN) loadUsers();
+                if (error != null) {
+                    showAlert("Error", "The bulk action could not be started: " + error.getMessage());
+                } else if (result.getFailed().isEmpty()) {
+                    showAlert("Success", label + " applied to " + result.getProcessed() + " report(s).");
+                } else {
+                    showAlert("Partially Completed", label + " applied to " + result.getProcessed() + " report(s); " +
+                              result.getFailed().size() + " could not be processed and are still in the queue.");
+                }
+            }));
+    }
+
+    private void showBulkProgress(int processed, int failed, int total) {
+        if (bulkProgressBar != null) {
+            bulkProgressBar.setVisible(true);
+            bulkProgressBar.setManaged(true);
+            bulkProgressBar.setProgress(total == 0 ? 0 : (double) (processed + failed) / total);
+        }
+        if (bulkProgressLabel != null) {
+            bulkProgressLabel.setVisible(true);
+            bulkProgressLabel.setManaged(true);
+            bulkProgressLabel.setText((processed + failed) + " / " + total + (failed > 0 ? " (" + failed + " failed)" : ""));
+        }
+    }
+
+    private void hideBulkProgress() {
+        if (bulkProgressBar != null) {
+            bulkProgressBar.setVisible(false);
+            bulkProgressBar.setManaged(false);
+        }
+        if (bulkProgressLabel != null) {
+            bulkProgressLabel.setVisible(false);
+            bulkProgressLabel.setManaged(false);
+        }
+        updateBulkSelection();
+    }
+
+    private void setupReportGroups() {
+        if (reportGroupsListView == null) return;
+        reportGroupsListView.setPlaceholder(new Label("No reports to handle"));
+        reportGroupsSource.attach(reportGroupsListView);
+        if (reportGroupTypeComboBox != null) {
+            reportGroupTypeComboBox.getItems().setAll(GROUPS_NOTES, GROUPS_USERS);
+            reportGroupTypeComboBox.setValue(GROUPS_NOTES);
+            reportGroupTypeComboBox.valueProperty().addListener((obs, oldValue, newValue) -> {
+                groupNoteTargets = !GROUPS_USERS.equals(newValue);
+                reportGroupsSource.reset();
+            });
+        }
+        reportGroupsListView.setCellFactory(param -> new javafx.scene.control.ListCell<com.visiboard.pc.model.ReportGroup>() {
+            @Override
+            protected void updateItem(com.visiboard.pc.model.ReportGroup group, boolean empty) {
+                super.updateItem(group, empty);
+                if (empty || group == null) {
+                    setText(null);
+                    setGraphic(null);
+                    setStyle("-fx-background-color: transparent;");
+                    return;
+                }
+                javafx.scene.layout.VBox root = new javafx.scene.layout.VBox(8);
+                root.getStyleClass().add("list-item-card");
+                root.setPadding(new javafx.geometry.Insets(12));
+
+                // Header Row: report count + one badge per category
+                javafx.scene.layout.HBox header = new javafx.scene.layout.HBox(8);
+                header.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+                Label typeIcon = new Label(group.isNoteTarget() ? "📝" : "👤");
+                typeIcon.setStyle("-fx-font-size: 16px;");
+                Label countLabel = new Label(group.getReportCount() + (group.getReportCount() == 1 ? " report" : " reports") +
+                                             " from " + group.getReporterCount() + (group.getReporterCount() == 1 ? " user" : " users"));
+                countLabel.setStyle("-fx-text-fill: #e53935; -fx-font-weight: bold; -fx-font-size: 13px;");
+                header.getChildren().addAll(typeIcon, countLabel);
+                for (String category : group.getCategories()) {
+                    Label badge = new Label(formatCategory(category));
+                    badge.setStyle(getCategoryStyle(category));
+                    badge.setPadding(new javafx.geometry.Insets(4, 10, 4, 10));
+                    header.getChildren().add(badge);
+                }
+
+                String name = group.getReportedName();
+                if (name == null || name.isEmpty()) name = group.getReportedUserId();
+                if (name == null || name.isEmpty()) name = "Unknown User";
+                Label targetLabel = new Label((group.isNoteTarget() ? "Note by " : "User: ") + name);
+                targetLabel.setStyle("-fx-text-fill: #ff6b6b; -fx-font-weight: bold; -fx-font-size: 12px;");
+
+                Label detailsLabel = new Label(group.getTargetDetails() != null && !group.getTargetDetails().isEmpty()
+                        ? "Content: " + group.getTargetDetails()
+                        : (group.isNoteTarget() ? "Note ID: " : "User ID: ") + group.getTargetId());
+                detailsLabel.getStyleClass().add("list-cell-subtitle");
+                detailsLabel.setWrapText(true);
+
+                java.text.SimpleDateFormat format = new java.text.SimpleDateFormat("MMM dd, yyyy HH:mm");
+                Label timeLabel = new Label("First reported: " + format.format(new java.util.Date(group.getFirstReportedAt())) +
+                                            "   Last: " + format.format(new java.util.Date(group.getLastReportedAt())));
+                timeLabel.setStyle("-fx-text-fill: #666; -fx-font-size: 10px;");
+
+                // Actions resolve every report in the group
+                javafx.scene.layout.HBox actionsBox = new javafx.scene.layout.HBox(8);
+                actionsBox.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+                actionsBox.setPadding(new javafx.geometry.Insets(8, 0, 0, 0));
+
+                Button dismissBtn = new Button("✕ Dismiss All");
+                dismissBtn.setStyle("-fx-background-color: #4a4a5a; -fx-text-fill: white; -fx-font-size: 11px; -fx-background-radius: 4;");
+                dismissBtn.setOnAction(e -> handleGroupAction(com.visiboard.pc.services.ModerationService.Action.DISMISS, group, "Dismiss"));
+
+                Button warnBtn = new Button("⚠ Warn");
+                warnBtn.setStyle("-fx-background-color: #f39c12; -fx-text-fill: white; -fx-font-size: 11px; -fx-background-radius: 4;");
+                warnBtn.setOnAction(e -> handleGroupAction(com.visiboard.pc.services.ModerationService.Action.WARN, group, "Warn"));
+
+                Button restrictBtn = new Button("🔒 Restrict");
+                restrictBtn.setStyle("-fx-background-color: #e67e22; -fx-text-fill: white; -fx-font-size: 11px; -fx-background-radius: 4;");
+                restrictBtn.setOnAction(e -> handleGroupAction(com.visiboard.pc.services.ModerationService.Action.RESTRICT, group, "Restrict"));
+
+                Button banBtn = new Button("🚫 Ban");
+                banBtn.setStyle("-fx-background-color: #c0392b; -fx-text-fill: white; -fx-font-size: 11px; -fx-background-radius: 4;");
+                banBtn.setOnAction(e -> handleGroupAction(com.visiboard.pc.services.ModerationService.Action.BAN, group, "Ban"));
+
+                actionsBox.getChildren().addAll(dismissBtn, warnBtn, restrictBtn, banBtn);
+                if (group.isNoteTarget()) {
+                    Button deleteNoteBtn = new Button("🗑 Delete Note");
+                    deleteNoteBtn.setStyle("-fx-background-color: #8e44ad; -fx-text-fill: white; -fx-font-size: 11px; -fx-background-radius: 4;");
+                    deleteNoteBtn.setOnAction(e -> handleGroupAction(com.visiboard.pc.services.ModerationService.Action.DELETE_NOTE, group, "Delete Note"));
+                    actionsBox.getChildren().add(deleteNoteBtn);
+                }
+
+                root.getChildren().addAll(header, targetLabel, detailsLabel, timeLabel, actionsBox);
+                setGraphic(root);
+                setStyle("-fx-background-color: transparent;");
+            }
+        });
+        reportGroupsListView.setOnMouseClicked(event -> {
+            com.visiboard.pc.model.ReportGroup group = reportGroupsListView.getSelectionModel().getSelectedItem();
+            if (event.getClickCount() == 2 && group != null && group.isNoteTarget()) {
+                handleShowNoteDetails(group.getTargetId(), true);
+            }
+        });
+    }
+
+    private void handleGroupAction(com.visiboard.pc.services.ModerationService.Action action, com.visiboard.pc.model.ReportGroup group, String label) {
+        long expiry = 0;
+        if (action.needsExpiry()) {
+            expiry = showDurationDialog(label);
+            if (expiry == -1) return;
+        }
+        final long groupExpiry = expiry;
+        com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
+            boolean ok = com.visiboard.pc.services.ModerationService.applyToGroup(action, group, groupExpiry);
             javafx.application.Platform.runLater(() -> {
-                noteReportsList.clear();
-                userReportsList.clear();
-                
-                for (com.visiboard.pc.model.Report r : reports) {
-                    if (r.getReportedNoteId() != null && !r.getReportedNoteId().isEmpty()) {
-                        noteReportsList.add(r);
-                    } else {
-                        userReportsList.add(r);
+                loadReports();
+                if (action.needsExpiry()) loadUsers();
+                if (ok) {
+                    showAlert("Success", label + " applied to all " + group.getReportCount() + " report(s) on this target.");
+                } else {
+                    showAlert("Error", "The action could not be completed. No changes were made.");
+                }
+            });
+        });
+    }
+
+    private void onReportsPageLoaded() {
+        if (refreshReportsButton != null) refreshReportsButton.setDisable(false);
+        System.out.println("Loaded " + noteReportsList.size() + " note reports, " + userReportsList.size() + " user reports" +
+                           (noteReportsSource.hasMore() || userReportsSource.hasMore() ? " (more on scroll)." : "."));
+    }
+
+    private void onReportsPageFailed(Throwable error) {
+        // The report lists usually fail together; one alert per refresh is enough
+        boolean firstFailure = refreshReportsButton == null || refreshReportsButton.isDisable();
+        if (refreshReportsButton != null) refreshReportsButton.setDisable(false);
+        if (firstFailure) {
+            showAlert("Error", "Reports could not be loaded: " + error.getMessage() + ". Press Refresh to try again.");
+        }
+    }
+    
+    private final com.visiboard.pc.services.SyncChangeListener syncChangeListener = this::onSyncChange;
+
+    // Called on the live-sync thread after each flush
+    private void onSyncChange(String collection, java.util.Set<String> upsertedIds, java.util.Set<String> removedIds) {
+        switch (collection) {
+            case "reports":
+                applyReportChanges(upsertedIds, removedIds);
+                break;
+            case "users":
+                applyUserChanges(upsertedIds, removedIds);
+                refreshAnalyticsIfVisible();
+                break;
+            case "notes":
+                refreshAnalyticsIfVisible();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void applyReportChanges(java.util.Set<String> upsertedIds, java.util.Set<String> removedIds) {
+        com.visiboard.pc.util.ConcurrencyManager.io().submit(() -> {
+            java.util.List<com.visiboard.pc.model.Report> fresh = com.visiboard.pc.services.DatabaseService.getReportsByIds(upsertedIds);
+
+            javafx.application.Platform.runLater(() -> {
+                java.util.function.Predicate<com.visiboard.pc.model.Report> touched =
+                        r -> upsertedIds.contains(r.getReportId()) || removedIds.contains(r.getReportId());
+                noteReportsList.removeIf(touched);
+                userReportsList.removeIf(touched);
+
+                for (com.visiboard.pc.model.Report r : fresh) {
+                    com.visiboard.pc.ui.PagedListSource<com.visiboard.pc.model.Report> source = isNoteReport(r) ? noteReportsSource : userReportsSource;
+                    java.util.List<com.visiboard.pc.model.Report> list = source.getItems();
+                    // Reports older than the loaded pages will show up when the user scrolls to them
+                    if (!source.hasMore() || (!list.isEmpty() && r.getTimestamp() >= list.get(list.size() - 1).getTimestamp())) {
+                        insertByTimestamp(list, r);
                     }
                 }
-                
-                if (reportsListViewNotes != null) {
-                    reportsListViewNotes.setPlaceholder(new Label("No reports to handle"));
-                    reportsListViewNotes.setItems(noteReportsList);
-                    setupReportList(reportsListViewNotes, true);
+            });
+        });
+    }
+
+    // Lists are kept newest first, matching getAllReports()
+    private static void insertByTimestamp(java.util.List<com.visiboard.pc.model.Report> list, com.visiboard.pc.model.Report report) {
+        int i = 0;
+        while (i < list.size() && list.get(i).getTimestamp() >= report.getTimestamp()) {
+            i++;
+        }
+        list.add(i, report);
+    }
+
+    private void applyUserChanges(java.util.Set<String> upsertedIds, java.util.Set<String> removedIds) {
+        com.visiboard.pc.util.ConcurrencyManager.io().submit(() -> {
+            java.util.List<com.visiboard.pc.model.User> fresh = com.visiboard.pc.services.DatabaseService.getUsersByIds(upsertedIds);
+
+            javafx.application.Platform.runLater(() -> {
+                java.util.Map<String, com.visiboard.pc.model.User> changed = new java.util.LinkedHashMap<>();
+                for (com.visiboard.pc.model.User u : fresh) changed.put(u.getId(), u);
+
+                // Update loaded rows in place; drop rows that were removed or no longer match the filter
+                javafx.collections.ObservableList<com.visiboard.pc.model.User> items = usersSource.getItems();
+                for (int i = items.size() - 1; i >= 0; i--) {
+                    String id = items.get(i).getId();
+                    com.visiboard.pc.model.User updated = changed.remove(id);
+                    if (removedIds.contains(id) || (updated != null && !matchesUserFilter(updated))) {
+                        items.remove(i);
+                    } else if (updated != null) {
+                        items.set(i, updated);
+                    }
                 }
-                
-                if (reportsListViewUsers != null) {
-                    reportsListViewUsers.setPlaceholder(new Label("No reports to handle"));
-                    reportsListViewUsers.setItems(userReportsList);
-                    setupReportList(reportsListViewUsers, false);
+
+                // Users not loaded yet: only ones newer than the top row belong on screen now
+                for (com.visiboard.pc.model.User u : changed.values()) {
+                    boolean onLoadedRange = items.isEmpty() ? !usersSource.hasMore() : u.getCreatedAt() >= items.get(0).getCreatedAt();
+                    if (onLoadedRange && matchesUserFilter(u)) {
+                        items.add(0, u);
+                    }
                 }
-                
-                if (refreshReportsButton != null) refreshReportsButton.setDisable(false);
-                System.out.println("Loaded " + reports.size() + " reports (" + noteReportsList.size() + " notes, " + userReportsList.size() + " users).");
             });
-        }).start();
+        });
     }
-    
-    private void setupReportList(javafx.scene.control.ListView<com.visiboard.pc.model.Report> listView, boolean isNoteReport) {
+
+    private void refreshAnalyticsIfVisible() {
+        javafx.application.Platform.runLater(() -> {
+            if (viewAnalytics != null && viewAnalytics.isVisible()) {
+                loadAnalytics();
+            }
+        });
+    }
+
+    // Note vs user report is decided per row, so the same list can hold both (see the priority inbox)
+    private void setupReportList(javafx.scene.control.ListView<com.visiboard.pc.model.Report> listView) {
         listView.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2 && listView.getSelectionModel().getSelectedItem() != null) {
                 com.visiboard.pc.model.Report report = listView.getSelectionModel().getSelectedItem();
-                if (isNoteReport) {
+                if (isNoteReport(report)) {
                     handleShowNoteDetails(report.getReportedNoteId(), true);
                 } else {
                     handleShowUserDetails(report.getReportedUserId(), true);
@@ -238,6 +662,7 @@ public class AdminPanelController {
                     setGraphic(null);
                     setStyle("-fx-background-color: transparent;");
                 } else {
+                    boolean isNoteReport = isNoteReport(report);
                     javafx.scene.layout.VBox root = new javafx.scene.layout.VBox(8);
                     root.getStyleClass().add("list-item-card");
                     root.setPadding(new javafx.geometry.Insets(12));
@@ -389,178 +814,167 @@ public class AdminPanelController {
                     setStyle("-fx-background-color: transparent;");
                 }
             }
-            
-            private String formatCategory(String category) {
-                if (category == null) return "Other";
-                return category.replace("_", " ").toLowerCase()
-                    .substring(0, 1).toUpperCase() + category.replace("_", " ").toLowerCase().substring(1);
-            }
-            
-            private String getCategoryStyle(String category) {
-                String baseStyle = "-fx-background-radius: 12; -fx-font-size: 11px; -fx-font-weight: bold;";
-                if (category == null) category = "OTHER";
-                switch (category.toUpperCase()) {
-                    case "SPAM":
-                        return baseStyle + "-fx-background-color: #3498db; -fx-text-fill: white;";
-                    case "HATE_SPEECH":
-                    case "HATE SPEECH":
-                        return baseStyle + "-fx-background-color: #e74c3c; -fx-text-fill: white;";
-                    case "VIOLENCE":
-                        return baseStyle + "-fx-background-color: #c0392b; -fx-text-fill: white;";
-                    case "NUDITY":
-                        return baseStyle + "-fx-background-color: #9b59b6; -fx-text-fill: white;";
-                    case "HARASSMENT":
-                        return baseStyle + "-fx-background-color: #e67e22; -fx-text-fill: white;";
-                    case "MISINFORMATION":
-                        return baseStyle + "-fx-background-color: #f39c12; -fx-text-fill: black;";
-                    default:
-                        return baseStyle + "-fx-background-color: #95a5a6; -fx-text-fill: white;";
-                }
-            }
         });
         
         if (refreshReportsButton != null) {
-            refreshReportsButton.setOnAction(e -> loadReports());
+            refreshReportsButton.setOnAction(e -> {
+                loadReports();
+                // The inbox follows sync and local actions on its own; an explicit refresh rebuilds it
+                if (priorityListView != null) {
+                    com.visiboard.pc.util.ConcurrencyManager.io().submit(() -> com.visiboard.pc.services.ModerationInbox.getInstance().reload());
+                }
+            });
+        }
+    }
+
+    private static boolean isNoteReport(com.visiboard.pc.model.Report report) {
+        return report.getReportedNoteId() != null && !report.getReportedNoteId().isEmpty();
+    }
+
+    private static String formatCategory(String category) {
+        if (category == null) return "Other";
+        return category.replace("_", " ").toLowerCase()
+            .substring(0, 1).toUpperCase() + category.replace("_", " ").toLowerCase().substring(1);
+    }
+    
+    private static String getCategoryStyle(String category) {
+        String baseStyle = "-fx-background-radius: 12; -fx-font-size: 11px; -fx-font-weight: bold;";
+        if (category == null) category = "OTHER";
+        switch (category.toUpperCase()) {
+            case "SPAM":
+                return baseStyle + "-fx-background-color: #3498db; -fx-text-fill: white;";
+            case "HATE_SPEECH":
+            case "HATE SPEECH":
+                return baseStyle + "-fx-background-color: #e74c3c; -fx-text-fill: white;";
+            case "VIOLENCE":
+                return baseStyle + "-fx-background-color: #c0392b; -fx-text-fill: white;";
+            case "NUDITY":
+                return baseStyle + "-fx-background-color: #9b59b6; -fx-text-fill: white;";
+            case "HARASSMENT":
+                return baseStyle + "-fx-background-color: #e67e22; -fx-text-fill: white;";
+            case "MISINFORMATION":
+                return baseStyle + "-fx-background-color: #f39c12; -fx-text-fill: black;";
+            default:
+                return baseStyle + "-fx-background-color: #95a5a6; -fx-text-fill: white;";
         }
     }
 
     private void handleDismissReport(com.visiboard.pc.model.Report report) {
-        new Thread(() -> {
-            com.visiboard.pc.services.DatabaseService.dismissReport(report.getReportId());
-            com.visiboard.pc.services.FirebaseService.deleteReport(report.getReportId());
-            com.visiboard.pc.services.DatabaseService.notifyUser(report.getReporterId(), "Your report has been reviewed and dismissed. No violation found.");
-            javafx.application.Platform.runLater(() -> {
-                loadReports();
-                showAlert("Success", "Report dismissed successfully.");
-            });
-        }).start();
+        moderate(com.visiboard.pc.services.ModerationService.Action.DISMISS, report, 0,
+                "Report dismissed successfully.", this::loadReports);
     }
 
     private void handleWarnUser(com.visiboard.pc.model.Report report) {
-        new Thread(() -> {
-            com.visiboard.pc.services.DatabaseService.warnUser(report.getReportedUserId());
-            com.visiboard.pc.services.DatabaseService.deleteReport(report.getReportId());
-            com.visiboard.pc.services.FirebaseService.deleteReport(report.getReportId());
-            com.visiboard.pc.services.DatabaseService.notifyUser(report.getReportedUserId(), "You have received a warning for violating community guidelines.");
-            com.visiboard.pc.services.DatabaseService.notifyUser(report.getReporterId(), "We have reviewed your report and warned the user.");
-            javafx.application.Platform.runLater(() -> {
-                loadReports();
-                showAlert("Success", "User warned and reporter notified.");
-            });
-        }).start();
+        moderate(com.visiboard.pc.services.ModerationService.Action.WARN, report, 0,
+                "User warned and reporter notified.", this::loadReports);
     }
 
     private void handleRestrictUser(com.visiboard.pc.model.Report report) {
          long expiry = showDurationDialog("Restrict");
         if (expiry == -1) return;
 
-        new Thread(() -> {
-            com.visiboard.pc.services.DatabaseService.updateUserStatus(report.getReportedUserId(), "restricted", true, expiry);
-            com.visiboard.pc.services.DatabaseService.deleteReport(report.getReportId());
-            com.visiboard.pc.services.FirebaseService.deleteReport(report.getReportId());
-            String durationStr = expiry == 0 ? "permanently" : "until " + new java.util.Date(expiry).toString();
-            com.visiboard.pc.services.DatabaseService.notifyUser(report.getReportedUserId(), "Your account has been restricted " + durationStr + ".");
-            com.visiboard.pc.services.DatabaseService.notifyUser(report.getReporterId(), "Update: The user you reported has been restricted.");
-            
-            javafx.application.Platform.runLater(() -> {
-                showAlert("Success", "User restricted and reporter notified.");
-                loadUsers(); 
-                loadReports();
-            });
-        }).start();
+        moderate(com.visiboard.pc.services.ModerationService.Action.RESTRICT, report, expiry,
+                "User restricted and reporter notified.", () -> {
+                    loadUsers(); 
+                    loadReports();
+                });
     }
 
     private void handleBanUser(com.visiboard.pc.model.Report report) {
          long expiry = showDurationDialog("Ban");
         if (expiry == -1) return;
 
-        new Thread(() -> {
-            com.visiboard.pc.services.DatabaseService.updateUserStatus(report.getReportedUserId(), "banned", true, expiry);
-            com.visiboard.pc.services.DatabaseService.deleteReport(report.getReportId());
-            com.visiboard.pc.services.FirebaseService.deleteReport(report.getReportId());
-            String durationStr = expiry == 0 ? "permanently" : "until " + new java.util.Date(expiry).toString();
-            com.visiboard.pc.services.DatabaseService.notifyUser(report.getReportedUserId(), "Your account has been banned " + durationStr + ".");
-            com.visiboard.pc.services.DatabaseService.notifyUser(report.getReporterId(), "Update: The user you reported has been banned.");
-            
-            javafx.application.Platform.runLater(() -> {
-                showAlert("Success", "User banned and reporter notified.");
-                loadUsers();
-                loadReports();
-            });
-        }).start();
+        moderate(com.visiboard.pc.services.ModerationService.Action.BAN, report, expiry,
+                "User banned and reporter notified.", () -> {
+                    loadUsers();
+                    loadReports();
+                });
     }
     
     private void handleDeleteNote(com.visiboard.pc.model.Report report) {
-         new Thread(() -> {
-            com.visiboard.pc.services.DatabaseService.deleteNote(report.getReportedNoteId());
-            com.visiboard.pc.services.FirebaseService.deleteNote(report.getReportedNoteId());
-            com.visiboard.pc.services.DatabaseService.deleteReport(report.getReportId());
-            com.visiboard.pc.services.FirebaseService.deleteReport(report.getReportId());
-            
-            com.visiboard.pc.services.DatabaseService.notifyUser(report.getReportedUserId(), "Your note was removed for violating guidelines."); 
-            com.visiboard.pc.services.DatabaseService.notifyUser(report.getReporterId(), "Update: The content you reported has been removed.");
-            
+        moderate(com.visiboard.pc.services.ModerationService.Action.DELETE_NOTE, report, 0,
+                "Note deleted and parties notified.", this::loadReports);
+    }
+
+    /**
+     * Runs a report action in the background as one transaction, then refreshes the UI.
+     */
+    private void moderate(com.visiboard.pc.services.ModerationService.Action action, com.visiboard.pc.model.Report report,
+                          long expiry, String successMessage, Runnable refresh) {
+        com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
+            boolean ok = com.visiboard.pc.services.ModerationService.apply(action, report, expiry);
             javafx.application.Platform.runLater(() -> {
-                showAlert("Success", "Note deleted and parties notified.");
-                loadReports();
+                refresh.run();
+                if (ok) {
+                    showAlert("Success", successMessage);
+                } else {
+                    showAlert("Error", "The action could not be completed. No changes were made.");
+                }
             });
-        }).start();
+        });
     }
     
     private void handleWarnUser(String userId) {
-        new Thread(() -> {
+        com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
             com.visiboard.pc.services.DatabaseService.warnUser(userId);
             javafx.application.Platform.runLater(() -> showAlert("Success", "User " + userId + " has been warned."));
-        }).start();
+        });
     }
     
     private void handleRestrictUser(com.visiboard.pc.model.User user) {
         long expiry = showDurationDialog("Restrict");
         if (expiry == -1) return; // Cancelled
 
-        new Thread(() -> {
+        com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
             com.visiboard.pc.services.DatabaseService.updateUserStatus(user.getId(), "restricted", true, expiry);
             String durationStr = expiry == 0 ? "permanently" : "until " + new java.util.Date(expiry).toString();
             com.visiboard.pc.services.DatabaseService.notifyUser(user.getId(), "Your account has been restricted " + durationStr + " by an administrator.");
-            javafx.application.Platform.runLater(() -> {
-                showAlert("Success", "User restricted successfully.");
+            finishModeration("User restricted successfully.", () -> {
                 user.setRestricted(true);
                 user.setRestrictionExpiry(expiry);
                 loadUsers(); // Refresh to update UI
             });
-        }).start();
+        });
     }
     
 
 
     private void handleUnrestrictUser(com.visiboard.pc.model.User user) {
-        new Thread(() -> {
+        com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
             com.visiboard.pc.services.DatabaseService.updateUserStatus(user.getId(), "restricted", false, 0);
             com.visiboard.pc.services.DatabaseService.notifyUser(user.getId(), "Your account restriction has been removed.");
-            javafx.application.Platform.runLater(() -> {
-                showAlert("Success", "User restriction removed.");
+            finishModeration("User restriction removed.", () -> {
                 user.setRestricted(false);
                 user.setRestrictionExpiry(0);
                 loadUsers(); // Refresh to update UI
             });
-        }).start();
+        });
     }
 
     private void handleBanUser(com.visiboard.pc.model.User user) {
         long expiry = showDurationDialog("Ban");
         if (expiry == -1) return;
 
-        new Thread(() -> {
+        com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
             com.visiboard.pc.services.DatabaseService.updateUserStatus(user.getId(), "banned", true, expiry);
             String durationStr = expiry == 0 ? "permanently" : "until " + new java.util.Date(expiry).toString();
             com.visiboard.pc.services.DatabaseService.notifyUser(user.getId(), "Your account has been banned " + durationStr + ".");
-            javafx.application.Platform.runLater(() -> {
-                showAlert("Success", "User banned successfully.");
+            finishModeration("User banned successfully.", () -> {
                 user.setBanned(true);
                 user.setBanExpiry(expiry);
                 loadUsers(); // Refresh to update UI
             });
-        }).start();
+        });
+    }
+
+    /**
+     * Refreshes the UI and confirms the action. Firebase is updated in the background from the outbox.
+     */
+    private void finishModeration(String successMessage, Runnable refresh) {
+        javafx.application.Platform.runLater(() -> {
+            refresh.run();
+            showAlert("Success", successMessage);
+        });
     }
 
 
@@ -589,15 +1003,14 @@ public class AdminPanelController {
     }
 
     private void handleUnbanUser(com.visiboard.pc.model.User user) {
-        new Thread(() -> {
-            com.visiboard.pc.services.DatabaseService.updateUserStatus(user.getId(), "banned", false);
+        com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
+            com.visiboard.pc.services.DatabaseService.updateUserStatus(user.getId(), "banned", false, 0);
             com.visiboard.pc.services.DatabaseService.notifyUser(user.getId(), "Your account ban has been removed.");
-            javafx.application.Platform.runLater(() -> {
-                showAlert("Success", "User unbanned successfully.");
+            finishModeration("User unbanned successfully.", () -> {
                 user.setBanned(false);
                 loadUsers(); // Refresh to update UI
             });
-        }).start();
+        });
     }
 
 
@@ -616,78 +1029,45 @@ public class AdminPanelController {
     private javafx.scene.chart.LineChart<String, Number> usersLineChart;
 
     public void loadAnalytics() {
-        System.out.println("Loading analytics...");
+        final int days = getAnalyticsRangeDays();
+        System.out.println("Loading analytics (last " + days + " days)...");
         
-        // Fetch data in background thread
-        new Thread(() -> {
-            java.util.List<com.visiboard.pc.model.User> allUsers = com.visiboard.pc.services.DatabaseService.getAllUsers();
-            java.util.List<com.visiboard.pc.model.Note> allNotes = com.visiboard.pc.services.DatabaseService.getAllNotes();
-            int reportsCount = com.visiboard.pc.services.DatabaseService.getRecordCount("reports");
-            
-            // Process Data for Charts
-            java.time.LocalDate today = java.time.LocalDate.now();
+        // Fetch data in the background; reads only the daily_stats rollup. A newer refresh supersedes this one.
+        analyticsScope.run("stats", () -> com.visiboard.pc.services.DatabaseService.getDashboardStats(days), stats -> {
             java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("MM-dd");
+
+            if (usersCountLabel != null) usersCountLabel.setText(String.valueOf(stats.getTotalUsers()));
+            if (notesCountLabel != null) notesCountLabel.setText(String.valueOf(stats.getTotalNotes()));
+            if (reportsCountLabel != null) reportsCountLabel.setText(String.valueOf(stats.getPendingReports()));
+            if (activityChartTitle != null) activityChartTitle.setText("Activity (last " + days + " days)");
             
-            // Initialize maps for last 7 days
-            java.util.Map<String, Integer> noteCounts = new java.util.TreeMap<>();
-            java.util.Map<String, Integer> userCounts = new java.util.TreeMap<>();
-            
-            for (int i = 6; i >= 0; i--) {
-                String dateKey = today.minusDays(i).format(formatter);
-                noteCounts.put(dateKey, 0);
-                userCounts.put(dateKey, 0);
-            }
-            
-            // Populate Counts
-            for (com.visiboard.pc.model.Note note : allNotes) {
-                if (note.getCreatedAt() > 0) {
-                     java.time.LocalDate date = java.time.Instant.ofEpochMilli(note.getCreatedAt())
-                                                .atZone(java.time.ZoneId.systemDefault()).toLocalDate();
-                     String key = date.format(formatter);
-                     if (noteCounts.containsKey(key)) {
-                         noteCounts.put(key, noteCounts.get(key) + 1);
-                     }
+            // Populate Charts
+            if (notesBarChart != null) {
+                notesBarChart.getData().clear();
+                javafx.scene.chart.XYChart.Series<String, Number> series = new javafx.scene.chart.XYChart.Series<>();
+                series.setName("Notes Created");
+                for (java.util.Map.Entry<java.time.LocalDate, Long> entry : stats.getNewNotesPerDay().entrySet()) {
+                    series.getData().add(new javafx.scene.chart.XYChart.Data<>(entry.getKey().format(formatter), entry.getValue()));
                 }
+                notesBarChart.getData().add(series);
             }
             
-            for (com.visiboard.pc.model.User user : allUsers) {
-                if (user.getCreatedAt() > 0) {
-                     java.time.LocalDate date = java.time.Instant.ofEpochMilli(user.getCreatedAt())
-                                                .atZone(java.time.ZoneId.systemDefault()).toLocalDate();
-                     String key = date.format(formatter);
-                     if (userCounts.containsKey(key)) {
-                         userCounts.put(key, userCounts.get(key) + 1);
-                     }
+            if (usersLineChart != null) {
+                usersLineChart.getData().clear();
+                javafx.scene.chart.XYChart.Series<String, Number> series = new javafx.scene.chart.XYChart.Series<>();
+                series.setName("New Users");
+                for (java.util.Map.Entry<java.time.LocalDate, Long> entry : stats.getNewUsersPerDay().entrySet()) {
+                    series.getData().add(new javafx.scene.chart.XYChart.Data<>(entry.getKey().format(formatter), entry.getValue()));
                 }
+                usersLineChart.getData().add(series);
             }
+        });
+    }
 
-            javafx.application.Platform.runLater(() -> {
-                if (usersCountLabel != null) usersCountLabel.setText(String.valueOf(allUsers.size()));
-                if (notesCountLabel != null) notesCountLabel.setText(String.valueOf(allNotes.size()));
-                if (reportsCountLabel != null) reportsCountLabel.setText(String.valueOf(reportsCount));
-                
-                // Populate Charts
-                if (notesBarChart != null) {
-                    notesBarChart.getData().clear();
-                    javafx.scene.chart.XYChart.Series<String, Number> series = new javafx.scene.chart.XYChart.Series<>();
-                    series.setName("Notes Created");
-                    for (java.util.Map.Entry<String, Integer> entry : noteCounts.entrySet()) {
-                        series.getData().add(new javafx.scene.chart.XYChart.Data<>(entry.getKey(), entry.getValue()));
-                    }
-                    notesBarChart.getData().add(series);
-                }
-                
-                if (usersLineChart != null) {
-                    usersLineChart.getData().clear();
-                    javafx.scene.chart.XYChart.Series<String, Number> series = new javafx.scene.chart.XYChart.Series<>();
-                    series.setName("New Users");
-                    for (java.util.Map.Entry<String, Integer> entry : userCounts.entrySet()) {
-                        series.getData().add(new javafx.scene.chart.XYChart.Data<>(entry.getKey(), entry.getValue()));
-                    }
-                    usersLineChart.getData().add(series);
-                }
-            });
-        }).start();
+    private int getAnalyticsRangeDays() {
+        String range = analyticsRangeComboBox != null ? analyticsRangeComboBox.getValue() : null;
+        if (range == null) return 7;
+        return Integer.parseInt(range.substring(0, range.indexOf(' ')));
     }
     
     @FXML
@@ -699,62 +1079,73 @@ public class AdminPanelController {
     @FXML
     private Button refreshUsersButton;
 
-    private javafx.collections.ObservableList<com.visiboard.pc.model.User> allUsersList = javafx.collections.FXCollections.observableArrayList();
-    private javafx.collections.ObservableList<com.visiboard.pc.model.User> filteredUsersList = javafx.collections.FXCollections.observableArrayList();
+    // Search/filter are applied in SQL; the list pages in as it scrolls
+    private volatile String userSearch = "";
+    private volatile String userStatusFilter = "All";
+    private final com.visiboard.pc.ui.PagedListSource<com.visiboard.pc.model.User> usersSource =
+            new com.visiboard.pc.ui.PagedListSource<>((prev, size) -> com.visiboard.pc.services.DatabaseService.getUsersPage(
+                    userSearch, userStatusFilter,
+                    prev == null ? null : (java.sql.Timestamp) prev.getAfterKey(), prev == null ? null : prev.getAfterId(), size));
+    private boolean userListReady = false;
+    // Coalesces keystrokes in the search field into one query
+    private final javafx.animation.PauseTransition userSearchDebounce = new javafx.animation.PauseTransition(javafx.util.Duration.millis(250));
 
     public void loadUsers() {
         System.out.println("Loading users...");
-        if (refreshUsersButton != null) refreshUsersButton.setDisable(true);
-        
-        new Thread(() -> {
-            java.util.List<com.visiboard.pc.model.User> users = com.visiboard.pc.services.DatabaseService.getAllUsers();
-            javafx.application.Platform.runLater(() -> {
-                allUsersList.setAll(users);
-                setupUserList(); // Call setupUserList once to set cell factory and initial items
-                filterUsers(userSearchField.getText()); // Initial filter
+        if (!userListReady) {
+            setupUserList(); // Call setupUserList once to set cell factory and attach the paged source
+            usersSource.setOnPageLoaded(() -> {
                 if (refreshUsersButton != null) refreshUsersButton.setDisable(false);
-                System.out.println("Loaded " + users.size() + " users.");
+                System.out.println("Loaded " + usersSource.getItems().size() + " users" + (usersSource.hasMore() ? " (more on scroll)." : "."));
             });
-        }).start();
+            usersSource.setOnLoadFailed(error -> {
+                if (refreshUsersButton != null) refreshUsersButton.setDisable(false);
+                showAlert("Error", "Users could not be loaded: " + error.getMessage() + ". Press Refresh to try again.");
+            });
+            userListReady = true;
+        }
+        if (refreshUsersButton != null) refreshUsersButton.setDisable(true);
+        filterUsers(userSearchField.getText()); // Initial filter
     }
     
     private void filterUsers(String query) {
         String filterType = userFilterComboBox.getValue();
         if (filterType == null) filterType = "All";
-        
-        String lowerQuery = query.toLowerCase();
-        final String currentFilter = filterType; // Effectivley final for lambda
-
-        java.util.List<com.visiboard.pc.model.User> filtered = allUsersList.stream()
-            .filter(u -> {
-                boolean matchesSearch = (u.getDisplayName() != null && u.getDisplayName().toLowerCase().contains(lowerQuery)) ||
-                                        (u.getEmail() != null && u.getEmail().toLowerCase().contains(lowerQuery));
-                                        
-                boolean matchesFilter = true;
-                switch (currentFilter) {
-                    case "Active":
-                        matchesFilter = !u.isBanned() && !u.isRestricted();
-                        break;
-                    case "Restricted":
-                        matchesFilter = u.isRestricted();
-                        break;
-                    case "Banned":
-                        matchesFilter = u.isBanned();
-                        break;
-                    default: // "All"
-                        matchesFilter = true;
-                        break;
-                }
-                
-                return matchesSearch && matchesFilter;
-            })
-            .collect(java.util.stream.Collectors.toList());
-            
-        filteredUsersList.setAll(filtered);
+
+        userSearch = query == null ? "" : query;
+        userStatusFilter = filterType;
+        if (userListReady) {
+            usersSource.reset();
+        }
+    }
+
+    // Client-side twin of the SQL filter in DatabaseService.getUsersPage, for live-sync deltas
+    private boolean matchesUserFilter(com.visiboard.pc.model.User u) {
+        String lowerQuery = userSearch.trim().toLowerCase();
+        boolean matchesSearch = lowerQuery.isEmpty() ||
+                                (u.getDisplayName() != null && u.getDisplayName().toLowerCase().contains(lowerQuery)) ||
+                                (u.getEmail() != null && u.getEmail().toLowerCase().contains(lowerQuery));
+
+        boolean matchesFilter;
+        switch (userStatusFilter) {
+            case "Active":
+                matchesFilter = !u.isBanned() && !u.isRestricted();
+                break;
+            case "Restricted":
+                matchesFilter = u.isRestricted();
+                break;
+            case "Banned":
+                matchesFilter = u.isBanned();
+                break;
+            default: // "All"
+                matchesFilter = true;
+                break;
+        }
+        return matchesSearch && matchesFilter;
     }
     
     private void setupUserList() {
-        userListView.setItems(filteredUsersList); // Use filtered list
+        usersSource.attach(userListView);
         userListView.setCellFactory(param -> new javafx.scene.control.ListCell<>() {
             @Override
             protected void updateItem(com.visiboard.pc.model.User user, boolean empty) {
@@ -927,6 +1318,7 @@ public class AdminPanelController {
             try {
                 FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/visiboard/pc/view/map_view.fxml"));
                 javafx.scene.Parent mapRoot = loader.load();
+                mapController = loader.getController();
                 
                 // Clear placeholder and add map
                 viewMap.getChildren().clear();
@@ -945,9 +1337,8 @@ public class AdminPanelController {
 
     private void handleShowUserDetails(String userId, boolean fromReports) {
         if (userId == null) return;
-        new Thread(() -> {
-            java.util.List<com.visiboard.pc.model.User> users = com.visiboard.pc.services.DatabaseService.getAllUsers();
-            com.visiboard.pc.model.User user = users.stream().filter(u -> u.getId().equals(userId)).findFirst().orElse(null);
+        com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
+            com.visiboard.pc.model.User user = com.visiboard.pc.services.DatabaseService.getUserById(userId);
             
             if (user != null) {
                 javafx.application.Platform.runLater(() -> {
@@ -955,7 +1346,7 @@ public class AdminPanelController {
                      dialog.show(); 
                 });
             }
-        }).start();
+        });
     }
 
     private void handleShowNoteDetails(String noteId, boolean fromReports) {
@@ -968,9 +1359,8 @@ public class AdminPanelController {
                 NoteDetailController controller = loader.getController();
                 controller.setReportContext(fromReports);
                 
-                 new Thread(() -> {
-                    java.util.List<com.visiboard.pc.model.Note> allNotes = com.visiboard.pc.services.DatabaseService.getAllNotes();
-                    com.visiboard.pc.model.Note note = allNotes.stream().filter(n -> n.getNoteId().equals(noteId)).findFirst().orElse(null);
+                 com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
+                    com.visiboard.pc.model.Note note = com.visiboard.pc.services.DatabaseService.getNoteById(noteId);
                     
                     if (note != null) {
                          javafx.application.Platform.runLater(() -> {
@@ -982,7 +1372,7 @@ public class AdminPanelController {
                             stage.show();
                          });
                     }
-                }).start();
+                });
                 
             } catch (IOException e) {
                 e.printStackTrace();
@@ -17,23 +17,20 @@ public class AnalyticsController {
     @FXML
     private NumberAxis yAxis;
 
-    private final com.visiboard.pc.service.ApiService apiService;
-
-    public AnalyticsController() {
-        this.apiService = new com.visiboard.pc.service.ApiService();
-    }
-
     @FXML
     private void initialize() {
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName("User Engagement (Notes Created)");
         
-        apiService.getWeeklyEngagement().thenAccept(data -> {
+        // Last 7 days from the local daily_stats rollup, oldest first
+        java.util.concurrent.CompletableFuture.supplyAsync(
+                () -> com.visiboard.pc.services.DatabaseService.getDashboardStats(7).getNewNotesPerDay(),
+                com.visiboard.pc.util.ConcurrencyManager.io()
+        ).thenAccept(data -> {
             javafx.application.Platform.runLater(() -> {
-                // Order days correctly
-                String[] days = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
-                for (String day : days) {
-                    series.getData().add(new XYChart.Data<>(day, data.getOrDefault(day, 0L)));
+                for (java.util.Map.Entry<java.time.LocalDate, Long> entry : data.entrySet()) {
+                    String day = entry.getKey().getDayOfWeek().getDisplayName(java.time.format.TextStyle.SHORT, java.util.Locale.ENGLISH);
+                    series.getData().add(new XYChart.Data<>(day, entry.getValue()));
                 }
                 engagementChart.getData().add(series);
             });
@@ -25,6 +25,7 @@ public class MapController {
 
     private final ApiService apiService;
     private final ObjectMapper objectMapper;
+    private final com.visiboard.pc.util.TaskScope scope = new com.visiboard.pc.util.TaskScope("Map");
 
     public MapController() {
         this.apiService = new ApiService();
@@ -265,39 +266,36 @@ public class MapController {
     
     private void loadNotesOnMap(WebEngine webEngine, boolean fitBounds, Runnable onComplete) {
         System.out.println("[Map] Loading notes...");
-        // Use DatabaseService instead of ApiService for Admin Panel (Direct DB)
-        java.util.concurrent.CompletableFuture.supplyAsync(() -> com.visiboard.pc.services.DatabaseService.getAllNotes())
-        .thenAccept(notes -> {
+        // Use DatabaseService instead of ApiService for Admin Panel (Direct DB); a newer load supersedes this one
+        scope.run("notes", () -> {
+            java.util.List<com.visiboard.pc.model.Note> notes = com.visiboard.pc.services.DatabaseService.getAllNotes();
+            System.out.println("[Map] Received " + notes.size() + " notes from DB");
+            if (!notes.isEmpty()) {
+                com.visiboard.pc.model.Note first = notes.get(0);
+                System.out.println("[Map] First Note: ID=" + first.getNoteId() + ", Lat=" + first.getLatitude() + ", Lng=" + first.getLongitude());
+            }
+            String notesJson = objectMapper.writeValueAsString(notes);
+            System.out.println("[Map] JSON Length: " + notesJson.length());
+            return notesJson;
+        }, notesJson -> {
             try {
-                System.out.println("[Map] Received " + (notes != null ? notes.size() : 0) + " notes from DB");
-                if (notes != null && !notes.isEmpty()) {
-                    com.visiboard.pc.model.Note first = notes.get(0);
-                    System.out.println("[Map] First Note: ID=" + first.getNoteId() + ", Lat=" + first.getLatitude() + ", Lng=" + first.getLongitude());
+                JSObject window = (JSObject) webEngine.executeScript("window");
+                window.call("addNotes", notesJson, fitBounds);
+                System.out.println("[Map] Executed addNotes (fitBounds: " + fitBounds + ")");
+                if (onComplete != null) {
+                    onComplete.run();
                 }
-                String notesJson = objectMapper.writeValueAsString(notes);
-                System.out.println("[Map] JSON Length: " + (notesJson != null ? notesJson.length() : 0));
-                // System.out.println("[Map] Notes JSON: " + notesJson); // Reduced logging
-                Platform.runLater(() -> {
-                    try {
-                        JSObject window = (JSObject) webEngine.executeScript("window");
-                        window.call("addNotes", notesJson, fitBounds);
-                        System.out.println("[Map] Executed addNotes (fitBounds: " + fitBounds + ")");
-                        if (onComplete != null) {
-                            onComplete.run();
-                        }
-                    } catch (Exception e) {
-                        System.err.println("[Map] Error executing script: " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                });
             } catch (Exception e) {
-                System.err.println("[Map] Error serializing notes: " + e.getMessage());
+                System.err.println("[Map] Error executing script: " + e.getMessage());
                 e.printStackTrace();
             }
-        }).exceptionally(e -> {
-            System.err.println("[Map] Error fetching notes: " + e.getMessage());
-            e.printStackTrace();
-            return null;
         });
     }
+
+    /**
+     * Cancels note loads still in flight, e.g. when the map view is hidden.
+     */
+    public void cancelLoads() {
+        scope.cancelAll();
+    }
 }
@@ -2,6 +2,7 @@ package com.visiboard.pc.controller;
 
 import com.visiboard.pc.model.Note;
 import com.visiboard.pc.service.ApiService; // Still used for basic fetch if needed, but we use DatabaseService for admin actions
+import com.visiboard.pc.util.TaskScope;
 import com.visiboard.pc.util.UserSession;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
@@ -24,47 +25,38 @@ public class NoteDetailController {
     private Note note;
     private ApiService apiService;
     private Runnable onNoteDeleted;
+    // Loads for this window; closing the window cancels them
+    private final TaskScope scope = new TaskScope("NoteDetail");
+
+    @FXML
+    private void initialize() {
+        scope.closeWhenHidden(contentLabel);
+    }
 
     public void setNote(String noteId, ApiService apiService) {
         this.apiService = apiService;
         
-        new Thread(() -> {
-            java.util.List<Note> allNotes = com.visiboard.pc.services.DatabaseService.getAllNotes();
-            Note target = null;
-            for(Note n : allNotes) {
-                if (n.getId().equals(noteId)) {
-                    target = n;
-                    break;
-                }
-            }
-            
+        scope.run("note", () -> com.visiboard.pc.services.DatabaseService.getNoteById(noteId), target -> {
             if (target != null) {
                 setNote(target);
             }
-        }).start();
+        });
     }
 
     public void setNote(Note note) {
         this.note = note;
         
-        new Thread(() -> {
+        scope.run("note", () -> {
             // Ensure User object is populated
-            if (this.note.getUser() == null) {
+            if (note.getUser() == null) {
                 try {
-                    java.util.List<com.visiboard.pc.model.User> users = com.visiboard.pc.services.DatabaseService.getAllUsers();
-                    for(com.visiboard.pc.model.User u : users) {
-                        if (u.getId().equals(this.note.getUserId())) {
-                            this.note.setUser(u);
-                            break;
-                        }
-                    }
+                    note.setUser(com.visiboard.pc.services.DatabaseService.getUserById(note.getUserId()));
                 } catch (Exception e) {
                     System.err.println("Error fetching user for note: " + e.getMessage());
                 }
             }
-            
-            javafx.application.Platform.runLater(this::updateUI);
-        }).start();
+            return note;
+        }, loaded -> updateUI());
     }
     
     public void setOnNoteDeleted(Runnable callback) {
@@ -206,12 +198,8 @@ public class NoteDetailController {
         
         System.out.println("[Delete] Deleting note: " + noteId);
         
-        new Thread(() -> {
-            // 1. Delete from Firebase
-            com.visiboard.pc.services.FirebaseService.deleteNote(noteId);
-            
-            // 2. Notify Note Owner via Firebase
-            // 2. Notify Note Owner via Firebase
+        com.visiboard.pc.util.ConcurrencyManager.io().execute(() -> {
+            // 1. Notify Note Owner (mirrored to Firebase through the outbox)
             if (userId != null && !userId.isEmpty()) {
                 // Use the centralized notifyUser which now syncs to Firebase with correct schema
                 com.visiboard.pc.services.DatabaseService.notifyUser(userId, 
@@ -219,10 +207,10 @@ public class NoteDetailController {
                     "admin_alert");
             }
             
-            // 3. Delete Locally
+            // 2. Delete locally; the Firebase delete is queued in the same transaction
             com.visiboard.pc.services.DatabaseService.deleteNote(noteId);
             
-            // 4. UI Update
+            // 3. UI Update
             javafx.application.Platform.runLater(() -> {
                  javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.INFORMATION);
                  alert.setTitle("Admin Action");
@@ -235,6 +223,6 @@ public class NoteDetailController {
                  }
                  deleteButton.getScene().getWindow().hide();
             });
-        }).start();
+        });
     }
 }
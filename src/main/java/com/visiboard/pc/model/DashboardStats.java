@@ -0,0 +1,42 @@
+package com.visiboard.pc.model;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin dashboard numbers read from the daily_stats rollup: all-time totals per metric plus
+ * per-day values over the selected window. Daily maps are ordered oldest to newest and
+ * contain every day of the window (zero-filled).
+ */
+public class DashboardStats {
+    public static final String USERS_JOINED = "users_joined";
+    public static final String NOTES_CREATED = "notes_created";
+    public static final String LIKES = "likes";
+    public static final String REPORTS_FILED = "reports_filed";
+    public static final String REPORTS_RESOLVED = "reports_resolved";
+    public static final List<String> METRICS = List.of(USERS_JOINED, NOTES_CREATED, LIKES, REPORTS_FILED, REPORTS_RESOLVED);
+
+    private final Map<String, Long> totals;
+    private final Map<String, Map<LocalDate, Long>> perDay;
+
+    public DashboardStats(Map<String, Long> totals, Map<String, Map<LocalDate, Long>> perDay) {
+        this.totals = totals;
+        this.perDay = perDay;
+    }
+
+    public long getTotal(String metric) {
+        return totals.getOrDefault(metric, 0L);
+    }
+
+    public Map<LocalDate, Long> getPerDay(String metric) {
+        return perDay.getOrDefault(metric, Collections.emptyMap());
+    }
+
+    public long getTotalUsers() { return getTotal(USERS_JOINED); }
+    public long getTotalNotes() { return getTotal(NOTES_CREATED); }
+    public long getPendingReports() { return getTotal(REPORTS_FILED) - getTotal(REPORTS_RESOLVED); }
+    public Map<LocalDate, Long> getNewUsersPerDay() { return getPerDay(USERS_JOINED); }
+    public Map<LocalDate, Long> getNewNotesPerDay() { return getPerDay(NOTES_CREATED); }
+}
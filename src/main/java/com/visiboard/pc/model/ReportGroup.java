@@ -0,0 +1,56 @@
+package com.visiboard.pc.model;
+
+import java.util.List;
+
+/**
+ * All pending reports against one target (a note or a user), aggregated in SQL.
+ */
+public class ReportGroup {
+    public static final String TARGET_NOTE = "NOTE";
+    public static final String TARGET_USER = "USER";
+
+    private String targetType; // NOTE or USER
+    private String targetId; // note_id or user_id
+    private String reportedUserId; // the user, or the note's author
+    private String reportedName;
+    private String targetDetails;
+    private int reportCount;
+    private int reporterCount;
+    private List<String> categories;
+    private long firstReportedAt;
+    private long lastReportedAt;
+
+    public ReportGroup() {}
+
+    public String getTargetType() { return targetType; }
+    public void setTargetType(String targetType) { this.targetType = targetType; }
+
+    public boolean isNoteTarget() { return TARGET_NOTE.equals(targetType); }
+
+    public String getTargetId() { return targetId; }
+    public void setTargetId(String targetId) { this.targetId = targetId; }
+
+    public String getReportedUserId() { return reportedUserId; }
+    public void setReportedUserId(String reportedUserId) { this.reportedUserId = reportedUserId; }
+
+    public String getReportedName() { return reportedName; }
+    public void setReportedName(String reportedName) { this.reportedName = reportedName; }
+
+    public String getTargetDetails() { return targetDetails; }
+    public void setTargetDetails(String targetDetails) { this.targetDetails = targetDetails; }
+
+    public int getReportCount() { return reportCount; }
+    public void setReportCount(int reportCount) { this.reportCount = reportCount; }
+
+    public int getReporterCount() { return reporterCount; }
+    public void setReporterCount(int reporterCount) { this.reporterCount = reporterCount; }
+
+    public List<String> getCategories() { return categories; }
+    public void setCategories(List<String> categories) { this.categories = categories; }
+
+    public long getFirstReportedAt() { return firstReportedAt; }
+    public void setFirstReportedAt(long firstReportedAt) { this.firstReportedAt = firstReportedAt; }
+
+    public long getLastReportedAt() { return lastReportedAt; }
+    public void setLastReportedAt(long lastReportedAt) { this.lastReportedAt = lastReportedAt; }
+}
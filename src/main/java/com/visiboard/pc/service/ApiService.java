@@ -3,6 +3,7 @@ package com.visiboard.pc.service;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.visiboard.pc.model.Note;
+import com.visiboard.pc.util.SingleFlight;
 
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -15,12 +16,14 @@ import java.util.concurrent.CompletableFuture;
 public class ApiService {
 
     private static final String BASE_URL = "http://localhost:8080/api";
+    // Shared by all instances: dialogs each create their own ApiService
+    private static final SingleFlight GETS = new SingleFlight("ApiService");
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
 
     public ApiService() {
         this.httpClient = java.net.http.HttpClient.newBuilder()
-                .executor(com.visiboard.pc.util.ConcurrencyManager.getExecutor())
+                .executor(com.visiboard.pc.util.ConcurrencyManager.io())
                 .version(java.net.http.HttpClient.Version.HTTP_2)
                 .build();
         this.objectMapper = new ObjectMapper();
@@ -107,7 +110,8 @@ public class ApiService {
                 .GET()
                 .build();
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        CompletableFuture<HttpResponse<String>> exchange = sendGet(request);
+        return abortOnCancel(exchange, exchange
                 .thenApply(response -> {
                     System.out.println("GET /notes/" + id + " Status: " + response.statusCode());
                     System.out.println("GET /notes/" + id + " Body: " + response.body());
@@ -120,7 +124,7 @@ public class ApiService {
                         e.printStackTrace();
                         return null;
                     }
-                });
+                }));
     }
 
     public java.util.concurrent.CompletableFuture<Note> createNote(Note note) {
@@ -164,7 +168,8 @@ public class ApiService {
                 .GET()
                 .build();
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        CompletableFuture<HttpResponse<String>> exchange = sendGet(request);
+        return abortOnCancel(exchange, exchange
                 .thenApply(response -> {
                     System.out.println("GET /comments/note/" + noteId + " Status: " + response.statusCode());
                     System.out.println("GET /comments/note/" + noteId + " Body: " + response.body());
@@ -180,7 +185,7 @@ public class ApiService {
                         e.printStackTrace();
                         return Collections.<com.visiboard.pc.model.Comment>emptyList();
                     }
-                });
+                }));
     }
 
     public java.util.concurrent.CompletableFuture<com.visiboard.pc.model.Comment> postComment(String noteId, String content) {
@@ -446,7 +451,8 @@ public class ApiService {
                     .GET()
                     .build();
             
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            CompletableFuture<HttpResponse<String>> exchange = sendGet(request);
+            return abortOnCancel(exchange, exchange
                     .thenApply(response -> {
                         if (response.statusCode() == 200) {
                             try {
@@ -458,7 +464,7 @@ public class ApiService {
                             }
                         }
                         return false;
-                    });
+                    }));
         } catch (Exception e) {
             e.printStackTrace();
             return CompletableFuture.completedFuture(false);
@@ -471,7 +477,8 @@ public class ApiService {
                 .GET()
                 .build();
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        CompletableFuture<HttpResponse<String>> exchange = sendGet(request);
+        return abortOnCancel(exchange, exchange
                 .thenApply(response -> {
                     System.out.println("GET /users/firebase/" + uid + " Status: " + response.statusCode());
                     System.out.println("Body: " + response.body());
@@ -482,7 +489,7 @@ public class ApiService {
                         e.printStackTrace();
                         return null;
                     }
-                });
+                }));
     }
 
     public CompletableFuture<com.visiboard.pc.model.User> getUserById(String uuid) {
@@ -491,7 +498,8 @@ public class ApiService {
                 .GET()
                 .build();
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        CompletableFuture<HttpResponse<String>> exchange = sendGet(request);
+        return abortOnCancel(exchange, exchange
                 .thenApply(response -> {
                     System.out.println("GET /users/" + uuid + " Status: " + response.statusCode());
                     System.out.println("Body: " + response.body());
@@ -502,7 +510,7 @@ public class ApiService {
                         e.printStackTrace();
                         return null;
                     }
-                });
+                }));
     }
 
     public CompletableFuture<Boolean> sendMessage(String recipientFirebaseUid, String messageText) {
@@ -536,4 +544,17 @@ public class ApiService {
             return CompletableFuture.completedFuture(false);
         }
     }
+
+    // Identical GETs in flight at the same time share one exchange; each caller parses its own copy of the body
+    private CompletableFuture<HttpResponse<String>> sendGet(HttpRequest request) {
+        return GETS.execute(request.uri(), () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+    }
+
+    // Cancelling the returned future (e.g. when the view's TaskScope closes) aborts the exchange once no other caller shares it
+    private static <T> CompletableFuture<T> abortOnCancel(CompletableFuture<?> exchange, CompletableFuture<T> result) {
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) exchange.cancel(true);
+        });
+        return result;
+    }
 }
@@ -0,0 +1,142 @@
+package com.visiboard.pc.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content-addressed image files: each blob is stored once under the SHA-256 of its bytes,
+ * sharded two levels deep ({@code ab/cd/abcd...}) so no directory grows too large.
+ *
+ * Files are written to a temporary name and moved into place, so readers never see a partial
+ * blob and concurrent writers of the same content are harmless. Large blobs are read through a
+ * read-only memory mapping, handing the decoder the page cache instead of a heap copy.
+ */
+final class BlobDirectory {
+
+    // Below this a plain read is cheaper than setting up a mapping
+    private static final int MAP_THRESHOLD = 64 * 1024;
+
+    private final Path root;
+
+    BlobDirectory(Path root) throws IOException {
+        this.root = Files.createDirectories(root);
+    }
+
+    static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    Path pathOf(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    boolean exists(String hash) {
+        return Files.exists(pathOf(hash));
+    }
+
+    /**
+     * Stores {@code data} under {@code hash} unless that blob is already present.
+     */
+    void store(String hash, byte[] data) throws IOException {
+        Path target = pathOf(hash);
+        if (Files.exists(target)) return;
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+        try {
+            Files.write(temp, data);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Another thread stored the same content first
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Stream over the blob, or null if it is missing (e.g. deleted by hand).
+     */
+    InputStream open(String hash) throws IOException {
+        Path path = pathOf(hash);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAP_THRESHOLD) {
+                return new ByteArrayInputStream(Files.readAllBytes(path));
+            }
+            // The mapping stays valid after the channel is closed
+            return new BufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Removes the blob. A failure (e.g. Windows refusing to delete a still-mapped file) is only
+     * logged; the orphaned file costs disk space but is never read again.
+     */
+    void delete(String hash) {
+        try {
+            Files.deleteIfExists(pathOf(hash));
+        } catch (IOException e) {
+            System.err.println("[ImageCache] Failed to delete blob " + hash + ": " + e.getMessage());
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
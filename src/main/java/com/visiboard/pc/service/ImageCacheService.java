@@ -1,28 +1,86 @@
 package com.visiboard.pc.service;
 
+import com.visiboard.pc.util.ConcurrencyManager;
 import javafx.scene.image.Image;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
-import java.net.URL;
-import java.sql.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.Base64;
+import java.util.Deque;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * Loads images by URL (or inline base64) through two cache tiers: decoded images in memory
+ * ({@link ImageMemoryCache}, budget -Dvisiboard.imageCache.memoryMb, default 64) in front of the
+ * encoded bytes in ~/.visiboard/image_cache.db, or in ~/.visiboard/image_blobs with
+ * -Dvisiboard.imageCache.backend=files. Only a miss in both goes to the network.
+ *
+ * Concurrent requests for the same image share one load, so a list full of one avatar downloads
+ * it once. Downloads use one shared HttpClient and at most -Dvisiboard.imageCache.perHost
+ * (default 4) run against any one host at a time.
+ */
 public class ImageCacheService {
     
-    private static ImageCacheService instance;
-    private Connection connection;
+    // "sqlite" keeps image bytes in the database, "files" in a content-addressed directory beside it
+    private static final String BACKEND = System.getProperty("visiboard.imageCache.backend", "sqlite");
+    private static final long MEMORY_BUDGET_BYTES = Long.getLong("visiboard.imageCache.memoryMb", 64) << 20;
+    private static final int DOWNLOADS_PER_HOST = Integer.getInteger("visiboard.imageCache.perHost", 4);
+    private static final Duration DOWNLOAD_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .executor(ConcurrencyManager.io())
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private static volatile ImageCacheService instance;
+    private SqliteImageStore store;
+    private final ImageMemoryCache memory = new ImageMemoryCache(MEMORY_BUDGET_BYTES);
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sharedLoads = new AtomicLong();
+    private final ConcurrentHashMap<String, CompletableFuture<Image>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, HostLimiter> hostLimiters = new ConcurrentHashMap<>();
     
     private ImageCacheService() {
         initDatabase();
     }
     
     public static ImageCacheService getInstance() {
-        if (instance == null) {
-            instance = new ImageCacheService();
+        ImageCacheService service = instance;
+        if (service == null) {
+            synchronized (ImageCacheService.class) {
+                service = instance;
+                if (service == null) {
+                    service = new ImageCacheService();
+                    instance = service;
+                }
+            }
         }
-        return instance;
+        return service;
+    }
+    
+    /**
+     * Flushes queued cache writes and closes the database, if the cache was ever used.
+     */
+    public static void shutdown() {
+        ImageCacheService service;
+        synchronized (ImageCacheService.class) {
+            service = instance;
+            instance = null;
+        }
+        if (service != null) service.close();
     }
     
     private void initDatabase() {
@@ -33,20 +91,15 @@ public class ImageCacheService {
                 dbDir.mkdirs();
             }
             
-            connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
-            
-            String createTable = "CREATE TABLE IF NOT EXISTS image_cache (" +
-                                "url TEXT PRIMARY KEY," +
-                                "image_data BLOB," +
-                                "cached_at INTEGER" +
-                                ")";
-            
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute(createTable);
+            BlobDirectory files = null;
+            if ("files".equalsIgnoreCase(BACKEND)) {
+                files = new BlobDirectory(java.nio.file.Paths.get(System.getProperty("user.home"), ".visiboard", "image_blobs"));
             }
+            store = new SqliteImageStore(dbPath, files);
+            store.startMaintenance();
             
-            System.out.println("[ImageCache] Database initialized at: " + dbPath);
-        } catch (SQLException e) {
+            System.out.println("[ImageCache] Database initialized at: " + dbPath + (files != null ? " (images stored as files)" : ""));
+        } catch (SQLException | java.io.IOException e) {
             System.err.println("[ImageCache] Failed to initialize database: " + e.getMessage());
             e.printStackTrace();
         }
@@ -57,6 +110,36 @@ public class ImageCacheService {
             return CompletableFuture.completedFuture(null);
         }
         
+        // Same image in many list cells: hand back the decoded instance without leaving this thread
+        Image decoded = memory.get(url);
+        if (decoded != null) {
+            memoryHits.incrementAndGet();
+            // Keep images that are hot in memory from looking cold to disk eviction
+            if (store != null && (url.startsWith("http://") || url.startsWith("https://"))) store.touch(url);
+            return CompletableFuture.completedFuture(decoded);
+        }
+        
+        // Join a load of the same image that is already running. Callers get copies, so one cell
+        // cancelling its request doesn't cancel it for the others.
+        CompletableFuture<Image> load = new CompletableFuture<>();
+        CompletableFuture<Image> running = inFlight.putIfAbsent(url, load);
+        if (running != null) {
+            sharedLoads.incrementAndGet();
+            return running.copy();
+        }
+        load(url).whenComplete((image, error) -> {
+            // Remove first: a caller arriving after completion finds the image in memory instead
+            inFlight.remove(url, load);
+            if (error != null) {
+                load.completeExceptionally(error);
+            } else {
+                load.complete(image);
+            }
+        });
+        return load.copy();
+    }
+    
+    private CompletableFuture<Image> load(String url) {
         // Handle base64 data URIs directly
         if (url.startsWith("data:image/")) {
             return CompletableFuture.supplyAsync(() -> {
@@ -64,12 +147,13 @@ public class ImageCacheService {
                     String base64Data = url.substring(url.indexOf(",") + 1);
                     // Use MimeDecoder to handle newlines and potential whitespace
                     byte[] imageBytes = Base64.getMimeDecoder().decode(base64Data);
-                    return new Image(new ByteArrayInputStream(imageBytes));
+                    misses.incrementAndGet();
+                    return remember(url, new Image(new ByteArrayInputStream(imageBytes)));
                 } catch (Exception e) {
                     System.err.println("[ImageCache] Failed to decode base64 image: " + e.getMessage());
                     return null;
                 }
-            });
+            }, ConcurrencyManager.cpu());
         }
         
         // Handle raw base64 strings without the data URI prefix
@@ -85,112 +169,195 @@ public class ImageCacheService {
                     String cleanBase64 = url.replaceAll("\\s", "");
                     byte[] imageBytes = Base64.getMimeDecoder().decode(cleanBase64);
                     System.out.println("[ImageCache] Successfully decoded " + imageBytes.length + " bytes");
-                    return new Image(new ByteArrayInputStream(imageBytes));
+                    misses.incrementAndGet();
+                    return remember(url, new Image(new ByteArrayInputStream(imageBytes)));
                 } catch (Exception e) {
                     System.err.println("[ImageCache] Failed to decode raw base64: " + e.getMessage());
                     return null;
                 }
-            });
+            }, ConcurrencyManager.cpu());
         }
         
-        return CompletableFuture.supplyAsync(() -> {
-            // Try to get from cache first
-            Image cachedImage = getFromCache(url);
-            if (cachedImage != null) {
-                System.out.println("[ImageCache] Loaded from cache: " + url);
-                return cachedImage;
-            }
-            
-            // Download and cache
-            System.out.println("[ImageCache] Downloading: " + url);
-            return downloadAndCache(url);
-        });
+        // Try to get from cache first
+        return CompletableFuture.supplyAsync(() -> getFromCache(url), ConcurrencyManager.io())
+                .thenCompose(cachedImage -> {
+                    if (cachedImage != null) {
+                        System.out.println("[ImageCache] Loaded from cache: " + url);
+                        diskHits.incrementAndGet();
+                        return CompletableFuture.completedFuture(remember(url, cachedImage));
+                    }
+                    
+                    // Download and cache
+                    System.out.println("[ImageCache] Downloading: " + url);
+                    misses.incrementAndGet();
+                    return downloadAndCache(url).thenApply(image -> remember(url, image));
+                });
+    }
+    
+    private Image remember(String key, Image image) {
+        memory.put(key, image);
+        return image;
+    }
+    
+    /**
+     * Lookups answered from decoded images in memory.
+     */
+    public long getMemoryHitCount() {
+        return memoryHits.get();
+    }
+    
+    /**
+     * Lookups that missed memory but found the bytes in the SQLite cache.
+     */
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+    
+    /**
+     * Lookups that missed both tiers and had to decode inline data or download.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+    
+    /**
+     * One-line summary of both tiers, for logs.
+     */
+    public String describeCache() {
+        return "memory: " + memory.describe() + "; hits " + memoryHits.get() + " memory, "
+                + diskHits.get() + " disk, " + misses.get() + " misses, " + sharedLoads.get() + " shared loads";
+    }
+    
+    /**
+     * Drops the decoded images held in memory; the SQLite tier is untouched.
+     */
+    public void clearMemoryCache() {
+        memory.clear();
     }
     
     private Image getFromCache(String url) {
+        if (store == null) return null;
         try {
-            String query = "SELECT image_data FROM image_cache WHERE url = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-                pstmt.setString(1, url);
-                ResultSet rs = pstmt.executeQuery();
-                
-                if (rs.next()) {
-                    byte[] imageData = rs.getBytes("image_data");
-                    if (imageData != null) {
-                        return new Image(new ByteArrayInputStream(imageData));
-                    }
-                }
+            InputStream imageData = store.read(url);
+            if (imageData != null) {
+                return new Image(imageData);
             }
-        } catch (SQLException e) {
+        } catch (SQLException | java.io.IOException e) {
             System.err.println("[ImageCache] Error reading from cache: " + e.getMessage());
         }
         return null;
     }
     
-    private Image downloadAndCache(String urlString) {
+    // Waits for a per-host slot without holding a thread; no pool thread is parked on a download
+    private CompletableFuture<Image> downloadAndCache(String urlString) {
+        URI uri;
         try {
-            URL url = new URL(urlString);
-            InputStream inputStream = url.openStream();
-            
-            // Read image data
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            byte[] data = new byte[1024];
-            int nRead;
-            while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
-            }
-            buffer.flush();
-            byte[] imageData = buffer.toByteArray();
-            inputStream.close();
-            
-            // Cache the image
-            cacheImage(urlString, imageData);
-            
-            // Return the image
-            return new Image(new ByteArrayInputStream(imageData));
-            
-        } catch (Exception e) {
+            uri = URI.create(urlString);
+        } catch (IllegalArgumentException e) {
             System.err.println("[ImageCache] Failed to download image: " + e.getMessage());
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(DOWNLOAD_TIMEOUT)
+                .GET()
+                .build();
+        HostLimiter limiter = hostLimiters.computeIfAbsent(uri.getHost() != null ? uri.getHost() : "",
+                host -> new HostLimiter(DOWNLOADS_PER_HOST));
+        
+        return limiter.submit(() -> HTTP.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()))
+                .thenApplyAsync(response -> {
+                    if (response.statusCode() != 200) {
+                        System.err.println("[ImageCache] Failed to download image: HTTP " + response.statusCode() + " for " + urlString);
+                        return null;
+                    }
+                    byte[] imageData = response.body();
+                    
+                    // Cache the image
+                    cacheImage(urlString, imageData);
+                    
+                    // Return the image
+                    return new Image(new ByteArrayInputStream(imageData));
+                }, ConcurrencyManager.io())
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    System.err.println("[ImageCache] Failed to download image: " + cause.getMessage());
+                    return null;
+                });
     }
     
     private void cacheImage(String url, byte[] imageData) {
-        try {
-            String insert = "INSERT OR REPLACE INTO image_cache (url, image_data, cached_at) VALUES (?, ?, ?)";
-            try (PreparedStatement pstmt = connection.prepareStatement(insert)) {
-                pstmt.setString(1, url);
-                pstmt.setBytes(2, imageData);
-                pstmt.setLong(3, System.currentTimeMillis());
-                pstmt.executeUpdate();
-            }
-            System.out.println("[ImageCache] Cached image: " + url);
-        } catch (SQLException e) {
-            System.err.println("[ImageCache] Failed to cache image: " + e.getMessage());
-        }
+        if (store == null) return;
+        store.write(url, imageData).thenRun(() -> System.out.println("[ImageCache] Cached image: " + url));
     }
     
     public void clearOldCache(long maxAgeMs) {
-        try {
-            long cutoffTime = System.currentTimeMillis() - maxAgeMs;
-            String delete = "DELETE FROM image_cache WHERE cached_at < ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(delete)) {
-                pstmt.setLong(1, cutoffTime);
-                int deleted = pstmt.executeUpdate();
+        if (store == null) return;
+        long cutoffTime = System.currentTimeMillis() - maxAgeMs;
+        store.deleteOlderThan(cutoffTime).whenComplete((deleted, error) -> {
+            if (error != null) {
+                System.err.println("[ImageCache] Failed to clear old cache: " + error.getMessage());
+            } else {
                 System.out.println("[ImageCache] Cleared " + deleted + " old images");
             }
-        } catch (SQLException e) {
-            System.err.println("[ImageCache] Failed to clear old cache: " + e.getMessage());
-        }
+        });
     }
     
     public void close() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+        if (store != null) store.close();
+    }
+    
+    /**
+     * Runs at most {@code permits} asynchronous calls at once; later ones wait in a queue and are
+     * started by the completion of an earlier one, so waiting costs no thread.
+     */
+    private static final class HostLimiter {
+        private final int permits;
+        private final Deque<Runnable> waiting = new ArrayDeque<>();
+        private int active;
+        
+        HostLimiter(int permits) {
+            this.permits = Math.max(1, permits);
+        }
+        
+        <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            Runnable start = () -> {
+                CompletableFuture<T> running;
+                try {
+                    running = call.get();
+                } catch (RuntimeException e) {
+                    running = CompletableFuture.failedFuture(e);
+                }
+                running.whenComplete((value, error) -> {
+                    release();
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            };
+            boolean startNow;
+            synchronized (this) {
+                startNow = active < permits;
+                if (startNow) {
+                    active++;
+                } else {
+                    waiting.add(start);
+                }
+            }
+            if (startNow) start.run();
+            return result;
+        }
+        
+        // The freed slot passes straight to the next waiting call, if any
+        private void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) active--;
             }
-        } catch (SQLException e) {
-            System.err.println("[ImageCache] Failed to close database: " + e.getMessage());
+            if (next != null) next.run();
         }
     }
 }
@@ -0,0 +1,119 @@
+package com.visiboard.pc.service;
+
+import javafx.scene.image.Image;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory tier of the image cache: decoded images kept in LRU order up to a byte budget,
+ * each weighted by its decoded size (width x height x 4 bytes of ARGB).
+ *
+ * Images pushed out of the budget are not dropped outright; they move to a soft-reference
+ * overflow that the GC may clear under memory pressure. A lookup that finds one there promotes
+ * it back into the LRU. All methods are thread-safe.
+ */
+final class ImageMemoryCache {
+
+    private final long budgetBytes;
+    private final LinkedHashMap<String, Image> lru = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, SoftEntry> overflow = new HashMap<>();
+    private final ReferenceQueue<Image> cleared = new ReferenceQueue<>();
+    private long usedBytes;
+    private long evictions;
+
+    ImageMemoryCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    static long weigh(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4L;
+    }
+
+    synchronized Image get(String key) {
+        Image image = lru.get(key);
+        if (image != null) return image;
+
+        expungeCleared();
+        SoftEntry soft = overflow.remove(key);
+        image = soft != null ? soft.get() : null;
+        if (image != null) {
+            admit(key, image);
+        }
+        return image;
+    }
+
+    synchronized void put(String key, Image image) {
+        if (image == null || image.isError()) return;
+        expungeCleared();
+        overflow.remove(key);
+        Image previous = lru.remove(key);
+        if (previous != null) usedBytes -= weigh(previous);
+        admit(key, image);
+    }
+
+    synchronized void clear() {
+        lru.clear();
+        overflow.clear();
+        usedBytes = 0;
+    }
+
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    synchronized String describe() {
+        return lru.size() + " images, " + (usedBytes >> 20) + "/" + (budgetBytes >> 20) + " MB, "
+                + overflow.size() + " soft, " + evictions + " evicted";
+    }
+
+    private void admit(String key, Image image) {
+        long weight = weigh(image);
+        if (weight > budgetBytes) {
+            // Would evict everything else; let the GC decide whether it stays
+            overflow.put(key, new SoftEntry(key, image, cleared));
+            return;
+        }
+        lru.put(key, image);
+        usedBytes += weight;
+
+        Iterator<Map.Entry<String, Image>> eldest = lru.entrySet().iterator();
+        while (usedBytes > budgetBytes && eldest.hasNext()) {
+            Map.Entry<String, Image> entry = eldest.next();
+            if (entry.getKey().equals(key)) continue;
+            eldest.remove();
+            usedBytes -= weigh(entry.getValue());
+            overflow.put(entry.getKey(), new SoftEntry(entry.getKey(), entry.getValue(), cleared));
+            evictions++;
+        }
+    }
+
+    // Drop overflow slots whose image the GC has already reclaimed
+    private void expungeCleared() {
+        SoftEntry ref;
+        while ((ref = (SoftEntry) cleared.poll()) != null) {
+            overflow.remove(ref.key, ref);
+        }
+    }
+
+    private static final class SoftEntry extends SoftReference<Image> {
+        final String key;
+
+        SoftEntry(String key, Image image, ReferenceQueue<Image> queue) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package com.visiboard.pc.service;
+
+import com.visiboard.pc.util.ConcurrencyManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code image_cache} SQLite database, opened in WAL mode so readers never wait for the
+ * writer.
+ *
+ * Images are stored inline as BLOBs, or, when constructed with a {@link BlobDirectory}, as
+ * content-addressed files with only their SHA-256 in the row. Inline rows stay readable after
+ * switching to files; file rows read as misses without them and are replaced on download.
+ *
+ * Lookups borrow one of a small pool of read connections (-Dvisiboard.imageCache.readers,
+ * default up to 4); each keeps its prepared SELECT for its lifetime. All writes go through a
+ * single writer thread that drains its queue and commits everything waiting in one
+ * transaction, so a burst of downloads costs one fsync instead of one each.
+ *
+ * The file is kept under a byte budget (-Dvisiboard.imageCache.diskMb, default 256). Reads
+ * only note the access time in memory; a maintenance job on {@link ConcurrencyManager#scheduler()}
+ * writes those times in one batch, evicts least recently used entries down to 90% of the budget
+ * and returns the freed pages to the filesystem with {@code incremental_vacuum}.
+ */
+final class SqliteImageStore {
+
+    private static final int READERS = Integer.getInteger("visiboard.imageCache.readers",
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int MAX_BATCH = 64;
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+    private static final long DISK_BUDGET_BYTES = Long.getLong("visiboard.imageCache.diskMb", 256) << 20;
+    private static final long MAINTENANCE_INTERVAL_MS = Long.getLong("visiboard.imageCache.maintenanceMs", 5 * 60_000L);
+    // Evict past the budget so the next few downloads don't trigger another eviction straight away
+    private static final double EVICT_TO = 0.9;
+    // SQLite pages (4 KB) handed back per maintenance run; keeps each run short
+    private static final int VACUUM_PAGES = 2048;
+
+    private static final String SELECT_SQL = "SELECT image_data, blob_hash FROM image_cache WHERE url = ?";
+    private static final String UPSERT_SQL = "INSERT OR REPLACE INTO image_cache (url, image_data, blob_hash, cached_at, last_accessed, size_bytes) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String OLDER_SQL = "SELECT url, size_bytes, blob_hash FROM image_cache WHERE cached_at < ?";
+    private static final String TOUCH_SQL = "UPDATE image_cache SET last_accessed = ? WHERE url = ? AND last_accessed < ?";
+    private static final String TOTAL_SIZE_SQL = "SELECT COALESCE(SUM(size_bytes), 0) FROM image_cache";
+    private static final String LRU_SQL = "SELECT url, size_bytes, blob_hash FROM image_cache ORDER BY last_accessed";
+    private static final String DELETE_SQL = "DELETE FROM image_cache WHERE url = ?";
+    private static final String BLOB_IN_USE_SQL = "SELECT 1 FROM image_cache WHERE blob_hash = ? LIMIT 1";
+
+    private final String jdbcUrl;
+    private final BlockingQueue<Reader> readers;
+    private final List<Reader> allReaders = new ArrayList<>();
+    private final BlockingQueue<Write> writes = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private final Connection writer;
+    private final BlobDirectory files;
+    private final PreparedStatement upsert;
+    private final PreparedStatement delete;
+    private final PreparedStatement touch;
+    private final PreparedStatement blobInUse;
+    // Blobs whose rows were deleted in the current batch; removed from disk once it commits
+    private final List<String> releasedBlobs = new ArrayList<>();
+    private final Map<String, Long> pendingTouches = new ConcurrentHashMap<>();
+    private boolean fullVacuumNeeded;
+    private ScheduledFuture<?> maintenance;
+    private volatile boolean closed;
+
+    /**
+     * @param files where image bytes go, or null to store them inline in the database
+     */
+    SqliteImageStore(String dbPath, BlobDirectory files) throws SQLException {
+        this.jdbcUrl = "jdbc:sqlite:" + dbPath;
+        this.files = files;
+        writer = open();
+        try (Statement stmt = writer.createStatement()) {
+            // Takes effect at once on a new file; an existing one needs a full VACUUM first (see compact)
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            stmt.execute("PRAGMA journal_mode = WAL");
+            // WAL keeps the database consistent without a sync per commit; a crash can only lose the last batch
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("CREATE TABLE IF NOT EXISTS image_cache (" +
+                         "url TEXT PRIMARY KEY," +
+                         "image_data BLOB," +
+                         "blob_hash TEXT," +
+                         "cached_at INTEGER," +
+                         "last_accessed INTEGER," +
+                         "size_bytes INTEGER" +
+                         ")");
+            addColumnIfMissing(stmt, "last_accessed", "INTEGER", "UPDATE image_cache SET last_accessed = cached_at");
+            addColumnIfMissing(stmt, "size_bytes", "INTEGER", "UPDATE image_cache SET size_bytes = length(image_data)");
+            addColumnIfMissing(stmt, "blob_hash", "TEXT", null);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_image_cache_last_accessed ON image_cache(last_accessed)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_image_cache_blob_hash ON image_cache(blob_hash)");
+            try (ResultSet rs = stmt.executeQuery("PRAGMA auto_vacuum")) {
+                fullVacuumNeeded = rs.next() && rs.getInt(1) != 2; // 2 = incremental
+            }
+        }
+        upsert = writer.prepareStatement(UPSERT_SQL);
+        delete = writer.prepareStatement(DELETE_SQL);
+        touch = writer.prepareStatement(TOUCH_SQL);
+        blobInUse = writer.prepareStatement(BLOB_IN_USE_SQL);
+
+        int readerCount = Math.max(1, READERS);
+        readers = new ArrayBlockingQueue<>(readerCount);
+        for (int i = 0; i < readerCount; i++) {
+            Reader reader = new Reader(open());
+            allReaders.add(reader);
+            readers.add(reader);
+        }
+
+        writerThread = ConcurrencyManager.threadFactory("VisiBoard-ImageCacheWriter").newThread(this::writeLoop);
+        writerThread.start();
+    }
+
+    // Caches created before eviction existed lack the bookkeeping columns; backfill them once
+    private static void addColumnIfMissing(Statement stmt, String column, String type, String backfill) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(image_cache)")) {
+            while (rs.next()) {
+                if (column.equals(rs.getString("name"))) return;
+            }
+        }
+        stmt.execute("ALTER TABLE image_cache ADD COLUMN " + column + " " + type);
+        if (backfill != null) stmt.execute(backfill);
+    }
+
+    private Connection open() throws SQLException {
+        Connection conn = DriverManager.getConnection(jdbcUrl);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+        }
+        return conn;
+    }
+
+    /**
+     * Encoded image bytes for {@code url}, or null if not cached. Blocks only while every reader
+     * is busy.
+     */
+    InputStream read(String url) throws SQLException, IOException {
+        if (closed) return null;
+        Reader reader;
+        try {
+            reader = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        byte[] inline;
+        String hash;
+        try {
+            reader.select.setString(1, url);
+            try (ResultSet rs = reader.select.executeQuery()) {
+                if (!rs.next()) return null;
+                inline = rs.getBytes(1);
+                hash = rs.getString(2);
+            }
+        } finally {
+            readers.add(reader);
+        }
+
+        InputStream in = null;
+        if (hash != null) {
+            in = files != null ? files.open(hash) : null;
+        } else if (inline != null) {
+            in = new ByteArrayInputStream(inline);
+        }
+        if (in != null) touch(url);
+        return in;
+    }
+
+    /**
+     * Records that {@code url} was used just now. Kept in memory until the next maintenance run,
+     * so cache hits never wait for a write.
+     */
+    void touch(String url) {
+        pendingTouches.put(url, System.currentTimeMillis());
+    }
+
+    /**
+     * Queues {@code data} to be stored under {@code url}; written with the next batch.
+     */
+    CompletableFuture<Integer> write(String url, byte[] data) {
+        long now = System.currentTimeMillis();
+        String hash;
+        if (files != null) {
+            // Write the file on the caller's thread so the writer only commits rows
+            hash = BlobDirectory.sha256(data);
+            try {
+                files.store(hash, data);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        } else {
+            hash = null;
+        }
+        return submit(() -> {
+            if (hash != null && !files.exists(hash)) {
+                // Released and deleted by an earlier batch after we stored it; write it again
+                try {
+                    files.store(hash, data);
+                } catch (IOException e) {
+                    // Skip the row rather than fail the whole batch; the image is downloaded again next time
+                    System.err.println("[ImageCache] Failed to store blob for " + url + ": " + e.getMessage());
+                    return 0;
+                }
+            }
+            upsert.setString(1, url);
+            upsert.setBytes(2, hash == null ? data : null);
+            upsert.setString(3, hash);
+            upsert.setLong(4, now);
+            upsert.setLong(5, now);
+            upsert.setLong(6, data.length);
+            return upsert.executeUpdate();
+        }, false);
+    }
+
+    /**
+     * Queues deletion of entries cached before {@code cutoffTime}; completes with the number removed.
+     */
+    CompletableFuture<Integer> deleteOlderThan(long cutoffTime) {
+        return submit(() -> {
+            int deleted = 0;
+            try (PreparedStatement older = writer.prepareStatement(OLDER_SQL)) {
+                older.setLong(1, cutoffTime);
+                try (ResultSet rs = older.executeQuery()) {
+                    while (rs.next()) {
+                        deleteRow(rs.getString(1), rs.getString(3));
+                        deleted++;
+                    }
+                }
+            }
+            delete.executeBatch();
+            return deleted;
+        }, false);
+    }
+
+    /**
+     * Runs {@link #maintain()} every few minutes on the shared scheduler until {@link #close()}.
+     */
+    synchronized void startMaintenance() {
+        if (maintenance != null || closed) return;
+        maintenance = ConcurrencyManager.scheduler().scheduleWithFixedDelay(this::maintain,
+                MAINTENANCE_INTERVAL_MS, MAINTENANCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a maintenance pass on the writer: flush access times, evict to the budget, then
+     * compact. Returns immediately, so it is safe to call from the scheduler.
+     */
+    void maintain() {
+        submit(() -> flushTouches() + evictToBudget(), false);
+        submit(this::compact, true);
+    }
+
+    // Writer thread only
+    private int flushTouches() throws SQLException {
+        if (pendingTouches.isEmpty()) return 0;
+        int count = 0;
+        for (Map.Entry<String, Long> entry : pendingTouches.entrySet()) {
+            // remove(key, value) keeps a touch that arrived while we were flushing
+            if (!pendingTouches.remove(entry.getKey(), entry.getValue())) continue;
+            touch.setLong(1, entry.getValue());
+            touch.setString(2, entry.getKey());
+            touch.setLong(3, entry.getValue());
+            touch.addBatch();
+            count++;
+        }
+        touch.executeBatch();
+        return count;
+    }
+
+    // Writer thread only, inside the batch transaction
+    private int evictToBudget() throws SQLException {
+        long total;
+        try (Statement stmt = writer.createStatement();
+             ResultSet rs = stmt.executeQuery(TOTAL_SIZE_SQL)) {
+            total = rs.next() ? rs.getLong(1) : 0;
+        }
+        if (total <= DISK_BUDGET_BYTES) return 0;
+
+        long target = (long) (DISK_BUDGET_BYTES * EVICT_TO);
+        long freed = 0;
+        int evicted = 0;
+        try (Statement scan = writer.createStatement();
+             ResultSet rs = scan.executeQuery(LRU_SQL)) {
+            while (total - freed > target && rs.next()) {
+                deleteRow(rs.getString(1), rs.getString(3));
+                freed += rs.getLong(2);
+                evicted++;
+            }
+        }
+        delete.executeBatch();
+        System.out.println("[ImageCache] Evicted " + evicted + " images (" + (freed >> 20) + " MB) to stay under "
+                + (DISK_BUDGET_BYTES >> 20) + " MB");
+        return evicted;
+    }
+
+    // Writer thread only; batched, the caller runs executeBatch
+    private void deleteRow(String url, String hash) throws SQLException {
+        delete.setString(1, url);
+        delete.addBatch();
+        if (hash != null) releasedBlobs.add(hash);
+    }
+
+    // Writer thread only, after the deleting batch committed: a blob can be shared by several URLs
+    private void deleteReleasedBlobs() {
+        for (String hash : releasedBlobs) {
+            try {
+                blobInUse.setString(1, hash);
+                boolean inUse;
+                try (ResultSet rs = blobInUse.executeQuery()) {
+                    inUse = rs.next();
+                }
+                if (!inUse && files != null) files.delete(hash);
+            } catch (SQLException e) {
+                System.err.println("[ImageCache] Failed to check blob " + hash + ": " + e.getMessage());
+            }
+        }
+        releasedBlobs.clear();
+    }
+
+    // Writer thread only, outside any transaction (VACUUM refuses to run inside one)
+    private int compact() throws SQLException {
+        try (Statement stmt = writer.createStatement()) {
+            if (fullVacuumNeeded) {
+                System.out.println("[ImageCache] Rebuilding cache file for incremental vacuum...");
+                stmt.execute("VACUUM");
+                fullVacuumNeeded = false;
+            } else {
+                stmt.execute("PRAGMA incremental_vacuum(" + VACUUM_PAGES + ")");
+            }
+        }
+        return 0;
+    }
+
+    private CompletableFuture<Integer> submit(WriteOp op, boolean outsideTransaction) {
+        Write write = new Write(op, outsideTransaction);
+        if (closed) {
+            write.done.completeExceptionally(new IllegalStateException("Image cache is closed"));
+        } else {
+            writes.add(write);
+        }
+        return write.done;
+    }
+
+    // Runs on the writer thread only; it alone touches the write connection and its statements
+    private void writeLoop() {
+        List<Write> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                Write first = writes.take();
+                if (first == Write.STOP) return;
+                batch.add(first);
+                writes.drainTo(batch, MAX_BATCH - 1);
+                boolean stop = batch.remove(Write.STOP);
+                List<Write> standalone = new ArrayList<>();
+                batch.removeIf(write -> write.outsideTransaction && standalone.add(write));
+                if (!batch.isEmpty()) commit(batch);
+                for (Write write : standalone) {
+                    runStandalone(write);
+                }
+                batch.clear();
+                if (stop) return;
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void commit(List<Write> batch) {
+        List<Integer> results = new ArrayList<>(batch.size());
+        try {
+            writer.setAutoCommit(false);
+            for (Write write : batch) {
+                results.add(write.op.apply());
+            }
+            writer.commit();
+            deleteReleasedBlobs();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).done.complete(results.get(i));
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[ImageCache] Failed to write batch of " + batch.size() + ": " + e.getMessage());
+            try {
+                writer.rollback();
+            } catch (SQLException rollbackError) {
+                System.err.println("[ImageCache] Rollback failed: " + rollbackError.getMessage());
+            }
+            releasedBlobs.clear();
+            try {
+                delete.clearBatch();
+            } catch (SQLException ignored) {
+                // Nothing was queued
+            }
+            for (Write write : batch) {
+                write.done.completeExceptionally(e);
+            }
+        } finally {
+            try {
+                writer.setAutoCommit(true);
+            } catch (SQLException ignored) {
+                // Connection is unusable; the next batch reports it
+            }
+        }
+    }
+
+    private void runStandalone(Write write) {
+        try {
+            write.done.complete(write.op.apply());
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[ImageCache] Maintenance failed: " + e.getMessage());
+            write.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Writes what is queued (including pending access times), then closes every connection.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) return;
+            if (maintenance != null) maintenance.cancel(false);
+            submit(this::flushTouches, false);
+            closed = true;
+        }
+        writes.add(Write.STOP);
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            System.err.println("[ImageCache] Writer did not finish in time; pending writes are dropped");
+            writerThread.interrupt();
+        }
+        List<Connection> connections = new ArrayList<>();
+        connections.add(writer);
+        for (Reader reader : allReaders) {
+            connections.add(reader.connection);
+        }
+        for (Connection conn : connections) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("[ImageCache] Failed to close database: " + e.getMessage());
+            }
+        }
+    }
+
+    private interface WriteOp {
+        int apply() throws SQLException;
+    }
+
+    private static final class Write {
+        static final Write STOP = new Write(null, false);
+
+        final WriteOp op;
+        final boolean outsideTransaction;
+        final CompletableFuture<Integer> done = new CompletableFuture<>();
+
+        Write(WriteOp op, boolean outsideTransaction) {
+            this.op = op;
+            this.outsideTransaction = outsideTransaction;
+        }
+    }
+
+    private static final class Reader {
+        final Connection connection;
+        final PreparedStatement select;
+
+        Reader(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.select = connection.prepareStatement(SELECT_SQL);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.visiboard.pc.services;
 
+import com.visiboard.pc.util.SingleFlight;
+import com.visiboard.pc.util.TaskScope;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
@@ -9,108 +11,44 @@ import java.sql.Statement;
 
 public class DatabaseService {
 
-    private static HikariDataSource dataSource;
-
     private static final String DB_URL = "jdbc:postgresql://localhost:5432/visiboard";
     private static final String DB_USER = "postgres";
     private static final String DB_PASSWORD = "ClashRoyale!1";
 
-    static {
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl(DB_URL);
-        config.setUsername(DB_USER);
-        config.setPassword(DB_PASSWORD);
-        config.addDataSourceProperty("cachePrepStmts", "true");
-        config.addDataSourceProperty("prepStmtCacheSize", "250");
-        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+    // Opened on the first getConnection(), so code that only needs the query text (the
+    // query plan test) never connects to the application database
+    private static final class Pool {
+        static final HikariDataSource DATA_SOURCE;
+
+        static {
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(DB_URL);
+            config.setUsername(DB_USER);
+            config.setPassword(DB_PASSWORD);
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", "250");
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
 
-        dataSource = new HikariDataSource(config);
+            DATA_SOURCE = new HikariDataSource(config);
+        }
     }
 
+    // Identical reads running at the same time (double-clicked refresh, two windows on one note) share one query
+    private static final SingleFlight READS = new SingleFlight("DatabaseService");
+
     public static Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        return Pool.DATA_SOURCE.getConnection();
     }
 
+    /**
+     * Applies any pending schema migrations. Existing data is kept, so the next sync
+     * picks up from the stored watermarks instead of rebuilding from zero.
+     */
     public static void initializeDatabase() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            
-            // Read schema from resources or file logic (simplified for immediate fix)
-            // Ideally we'd read schema.sql, but for now we'll execute the CREATE TABLEs directly
-            // to ensure they exist match schema.sql exactly.
-            
-            // DROP tables to ensure clean schema (since we had schema mismatches)
-            // SyncService will Repopulate data.
-            stmt.execute("DROP TABLE IF EXISTS notifications CASCADE");
-            stmt.execute("DROP TABLE IF EXISTS reports CASCADE");
-            stmt.execute("DROP TABLE IF EXISTS notes CASCADE");
-            stmt.execute("DROP TABLE IF EXISTS users CASCADE");
-            
-            // Users Table
-            stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
-                         "user_id VARCHAR(255) PRIMARY KEY, " +
-                         "username VARCHAR(255), " +
-                         "email VARCHAR(255), " +
-                         "display_name VARCHAR(255), " +
-                         "photo_url TEXT, " +
-                         "is_banned BOOLEAN DEFAULT FALSE, " +
-                         "ban_expiry BIGINT, " +
-                         "is_restricted BOOLEAN DEFAULT FALSE, " +
-                         "restriction_expiry BIGINT, " +
-                         "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                         "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                         "synced_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                         "total_likes_received INT DEFAULT 0, " + // Missing in schema.sql but used in code
-                         "followers_count INT DEFAULT 0, " +       // Missing in schema.sql but used in code
-                         "following_count INT DEFAULT 0" +         // Missing in schema.sql but used in code
-                         ")");
-
-            // Notes Table
-            stmt.execute("CREATE TABLE IF NOT EXISTS notes (" +
-                         "note_id VARCHAR(255) PRIMARY KEY, " +
-                         "user_id VARCHAR(255) REFERENCES users(user_id), " +
-                         "content TEXT, " +
-                         "image_url TEXT, " +
-                         "latitude DOUBLE PRECISION, " +
-                         "longitude DOUBLE PRECISION, " +
-                         "likes_count INT DEFAULT 0, " +
-                         "is_hidden BOOLEAN DEFAULT FALSE, " +
-                         "created_at TIMESTAMP, " +
-                         "liked_by_users TEXT[], " +
-                         "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                         "synced_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                         ")");
-
-            // Reports Table
-            stmt.execute("CREATE TABLE IF NOT EXISTS reports (" +
-                         "report_id VARCHAR(255) PRIMARY KEY, " +
-                         "reporter_id VARCHAR(255), " +
-                         "reported_user_id VARCHAR(255), " +
-                         "reported_note_id VARCHAR(255), " +
-                         "category VARCHAR(100), " +
-                         "description TEXT, " +
-                         "reason TEXT, " +
-                         "target_details TEXT, " +
-                         "type VARCHAR(50), " +
-                         "timestamp BIGINT, " +
-                         "status VARCHAR(50) DEFAULT 'PENDING', " +
-                         "synced_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                         ")");
-                         
-
-
-            // Notifications Table
-            stmt.execute("CREATE TABLE IF NOT EXISTS notifications (" +
-                         "notification_id VARCHAR(255) PRIMARY KEY, " +
-                         "user_id VARCHAR(255), " +
-                         "message TEXT, " +
-                         "type VARCHAR(50), " +
-                         "is_read BOOLEAN DEFAULT FALSE, " +
-                         "created_at BIGINT" +
-                         ")");
-
-            System.out.println("Database initialized successfully.");
-
+        try (Connection conn = getConnection()) {
+            int applied = SchemaMigrator.migrate(conn);
+            System.out.println("Database initialized successfully (schema v" + SchemaMigrator.latestVersion() +
+                               ", " + applied + " migration(s) applied).");
         } catch (SQLException e) {
             e.printStackTrace();
             System.err.println("Failed to initialize database: " + e.getMessage());
@@ -132,6 +70,9 @@ public class DatabaseService {
         return 0;
     }
 
+    /**
+     * Updates the status locally and queues the matching Firebase update in the same transaction.
+     */
     public static void updateUserStatus(String userId, String statusField, boolean value, long expiryTimestamp) {
         String boolColumn = "";
         String expiryColumn = "";
@@ -148,35 +89,31 @@ public class DatabaseService {
         }
 
         String sql = "UPDATE users SET " + boolColumn + " = ?, " + expiryColumn + " = ? WHERE user_id = ?";
-        try (Connection conn = getConnection();
-             java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setBoolean(1, value);
-            pstmt.setLong(2, expiryTimestamp);
-            pstmt.setString(3, userId);
-            pstmt.executeUpdate();
+        try {
+            inTransaction(conn -> {
+                try (java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setBoolean(1, value);
+                    pstmt.setLong(2, expiryTimestamp);
+                    pstmt.setString(3, userId);
+                    pstmt.executeUpdate();
+                }
+                FirestoreOutbox.update(conn, "users", userId, userStatusFields(statusField, value, expiryTimestamp));
+            });
             System.out.println("Updated user " + userId + " " + statusField + "=" + value + ", expiry=" + expiryTimestamp);
-            
-            // Sync to Firebase? 
-            // Ideally we need a 'syncToFirebase' method or 'FirebaseService.updateUser'.
-            // For now, DatabaseService is the primary touchpoint. 
-            // In a real app we'd trigger Firebase update here too. 
-            // I'll add a TODO or call FirebaseService if it exists.
-            com.visiboard.pc.services.FirebaseService.updateUserField(userId, statusField, value);
-            if (value) {
-                // If turning ON, also set expiry
-                String firestoreExpiryField = "banned".equalsIgnoreCase(statusField) ? "banExpiryDate" : "restrictionExpiryDate";
-                com.visiboard.pc.services.FirebaseService.updateUserField(userId, firestoreExpiryField, expiryTimestamp);
-            } else {
-                 // If turning OFF, clear expiry? Optional, but good practice.
-                 String firestoreExpiryField = "banned".equalsIgnoreCase(statusField) ? "banExpiryDate" : "restrictionExpiryDate";
-                com.visiboard.pc.services.FirebaseService.updateUserField(userId, firestoreExpiryField, 0L);
-            }
-            
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    // Firestore mirror of a status change; turning the flag off clears the expiry
+    static java.util.Map<String, Object> userStatusFields(String statusField, boolean value, long expiryTimestamp) {
+        String firestoreExpiryField = "banned".equalsIgnoreCase(statusField) ? "banExpiryDate" : "restrictionExpiryDate";
+        java.util.Map<String, Object> fields = new java.util.HashMap<>();
+        fields.put(statusField, value);
+        fields.put(firestoreExpiryField, value ? expiryTimestamp : 0L);
+        return fields;
+    }
+
     // Overload for backward compatibility / non-expiry calls (e.g. initial fix) - mapped to 0 expiry
     public static void updateUserStatus(String userId, String statusField, boolean value) {
         updateUserStatus(userId, statusField, value, 0);
@@ -186,202 +123,653 @@ public class DatabaseService {
         notifyUser(userId, message, "admin");
     }
 
+    /**
+     * Stores the notification and queues it for Firebase in the same transaction. The Firestore
+     * document reuses the local notification_id, so a resend overwrites instead of duplicating.
+     */
     public static void notifyUser(String userId, String message, String type) {
         String sql = "INSERT INTO notifications (notification_id, user_id, message, type, is_read, created_at) VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = getConnection();
-             java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            String notifId = java.util.UUID.randomUUID().toString();
-            long timestamp = System.currentTimeMillis();
-            
-            pstmt.setString(1, notifId);
-            pstmt.setString(2, userId);
-            pstmt.setString(3, message);
-            pstmt.setString(4, type);
-            pstmt.setBoolean(5, false);
-            pstmt.setLong(6, timestamp);
-            
-            pstmt.executeUpdate();
+        String notifId = java.util.UUID.randomUUID().toString();
+        long timestamp = System.currentTimeMillis();
+        try {
+            inTransaction(conn -> {
+                try (java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, notifId);
+                    pstmt.setString(2, userId);
+                    pstmt.setString(3, message);
+                    pstmt.setString(4, type);
+                    pstmt.setBoolean(5, false);
+                    pstmt.setLong(6, timestamp);
+                    pstmt.executeUpdate();
+                }
+                FirestoreOutbox.set(conn, "notifications", notifId, notificationDocument(userId, message, type, timestamp));
+            });
             System.out.println("Notification sent to " + userId + ": " + message);
-            
-            // Sync to Firebase
-            java.util.Map<String, Object> notifData = new java.util.HashMap<>();
-            notifData.put("toUserId", userId);
-            notifData.put("messageText", message);
-            notifData.put("type", type);
-            notifData.put("read", false);
-            notifData.put("timestamp", timestamp);
-            
-            // Standard fields for Admin notifications
-            notifData.put("fromUserId", "ADMIN_PANEL"); 
-            notifData.put("fromUserName", "VisiBoard Admin");
-            notifData.put("fromUserProfilePic", "https://ui-avatars.com/api/?name=VisiBoard+Admin&background=000&color=fff");
-            notifData.put("noteId", null);
-            notifData.put("noteText", null);
-            
-            com.visiboard.pc.services.FirebaseService.sendNotification(notifData);
-            
         } catch (SQLException e) {
             e.printStackTrace();
             System.err.println("Failed to notify user: " + e.getMessage());
         }
     }
+
+    static java.util.Map<String, Object> notificationDocument(String userId, String message, String type, long timestamp) {
+        java.util.Map<String, Object> notifData = new java.util.HashMap<>();
+        notifData.put("toUserId", userId);
+        notifData.put("messageText", message);
+        notifData.put("type", type);
+        notifData.put("read", false);
+        notifData.put("timestamp", timestamp);
+        
+        // Standard fields for Admin notifications
+        notifData.put("fromUserId", "ADMIN_PANEL"); 
+        notifData.put("fromUserName", "VisiBoard Admin");
+        notifData.put("fromUserProfilePic", "https://ui-avatars.com/api/?name=VisiBoard+Admin&background=000&color=fff");
+        notifData.put("noteId", null);
+        notifData.put("noteText", null);
+        return notifData;
+    }
+
+    @FunctionalInterface
+    interface TransactionWork {
+        void run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Runs {@code work} in one transaction, then wakes the outbox dispatcher so any Firebase
+     * writes it queued go out right away. Firebase itself is never called while the connection
+     * is held.
+     */
+    static void inTransaction(TransactionWork work) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                work.run(conn);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        OutboxDispatcher.wakeUp();
+    }
     
+    // Admin read-path queries; QueryPlanTest EXPLAINs these against the V3 indexes
+    static final String ALL_USERS_QUERY = "SELECT * FROM users ORDER BY created_at DESC";
+    static final String NOTES_BY_USER_QUERY = "SELECT * FROM notes WHERE user_id = ? ORDER BY created_at DESC";
+    static final String ALL_NOTES_QUERY = "SELECT * FROM notes ORDER BY created_at DESC";
+    static final String NOTE_BY_ID_QUERY = "SELECT * FROM notes WHERE note_id = ?";
+    static final String USER_BY_ID_QUERY = "SELECT * FROM users WHERE user_id = ?";
+
     public static java.util.List<com.visiboard.pc.model.User> getAllUsers() {
+        return READS.get("getAllUsers", () -> fetchAllUsers());
+    }
+
+    @SuppressWarnings("try")
+    private static java.util.List<com.visiboard.pc.model.User> fetchAllUsers() {
         java.util.List<com.visiboard.pc.model.User> users = new java.util.ArrayList<>();
-        String query = "SELECT * FROM users ORDER BY created_at DESC";
+        String query = ALL_USERS_QUERY;
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement();
+             TaskScope.Registration cancel = cancelWithScope(stmt);
              java.sql.ResultSet rs = stmt.executeQuery(query)) {
             
             while (rs.next()) {
-                com.visiboard.pc.model.User user = new com.visiboard.pc.model.User();
-                // Map DB columns (Local Postgres Schema) to Model
-                
-                // Use user_id as the main ID for the PC app
-                String fid = rs.getString("user_id");
-                // IF user_id is null/empty check if there is another ID column? No, user_id is PK.
-                user.setId(fid);
-                user.setFirebaseUid(fid);
-                
-                user.setName(rs.getString("display_name")); // Local DB column: display_name
-                user.setEmail(rs.getString("email"));
-                user.setProfilePicUrl(rs.getString("photo_url")); // Local DB column: photo_url
-                
-                // Moderation Status
-                user.setBanned(rs.getBoolean("is_banned"));
-                user.setBanExpiry(rs.getLong("ban_expiry"));
-                user.setRestricted(rs.getBoolean("is_restricted"));
-                user.setRestrictionExpiry(rs.getLong("restriction_expiry"));
-                
-                // Handle Timestamp
-                java.sql.Timestamp ts = rs.getTimestamp("created_at");
-                if (ts != null) {
-                    user.setCreatedAt(ts.getTime());
-                }
-                
-                try {
-                    user.setTotalLikesReceived(rs.getInt("total_likes_received"));
-                    user.setFollowersCount(rs.getInt("followers_count"));
-                    user.setFollowingCount(rs.getInt("following_count"));
-                } catch (SQLException ex) {
-                    // Ignore missing stats columns
-                }
-                
-                users.add(user);
+                users.add(mapUser(rs));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            System.err.println("Failed to fetch all users: " + e.getMessage());
+            if (!TaskScope.isCancelled()) {
+                e.printStackTrace();
+                System.err.println("Failed to fetch all users: " + e.getMessage());
+            }
         }
         return users;
     }
 
     public static java.util.List<com.visiboard.pc.model.Report> getAllReports() {
+        return READS.get("getAllReports", () -> fetchAllReports());
+    }
+
+    @SuppressWarnings("try")
+    private static java.util.List<com.visiboard.pc.model.Report> fetchAllReports() {
         java.util.List<com.visiboard.pc.model.Report> reports = new java.util.ArrayList<>();
-        String query = "SELECT r.*, " +
-                "u1.display_name as reporter_name, " +
-                "COALESCE(u2.display_name, u3.display_name) as reported_name, " +
-                "COALESCE(r.reported_user_id, n.user_id) as effective_reported_user_id " +
-                "FROM reports r " +
-                "LEFT JOIN users u1 ON r.reporter_id = u1.user_id " +
-                "LEFT JOIN users u2 ON r.reported_user_id = u2.user_id " +
-                "LEFT JOIN notes n ON r.reported_note_id = n.note_id " +
-                "LEFT JOIN users u3 ON n.user_id = u3.user_id " +
-                "ORDER BY r.timestamp DESC";
+        String query = ALL_REPORTS_QUERY;
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement();
+             TaskScope.Registration cancel = cancelWithScope(stmt);
              java.sql.ResultSet rs = stmt.executeQuery(query)) {
 
             while (rs.next()) {
-                com.visiboard.pc.model.Report report = new com.visiboard.pc.model.Report();
-                report.setReportId(rs.getString("report_id"));
-                report.setReporterId(rs.getString("reporter_id"));
-                // Use the effective ID found directly or via note
-                report.setReportedUserId(rs.getString("effective_reported_user_id"));
-                report.setReportedNoteId(rs.getString("reported_note_id"));
-                report.setReason(rs.getString("reason"));
-                report.setTargetDetails(rs.getString("target_details"));
-                report.setType(rs.getString("type"));
-                report.setCategory(rs.getString("category"));
-                report.setDescription(rs.getString("description"));
-                // timestamp is BIGINT in reports table, so getLong is safe
-                report.setTimestamp(rs.getLong("timestamp"));
-                report.setStatus(rs.getString("status"));
-
-                // Set resolved names
-                report.setReporterName(rs.getString("reporter_name"));
-                report.setReportedName(rs.getString("reported_name"));
-
-                reports.add(report);
+                reports.add(mapReport(rs));
+            }
+        } catch (SQLException e) {
+            if (!TaskScope.isCancelled()) {
+                e.printStackTrace();
+                System.err.println("Failed to fetch all reports: " + e.getMessage());
+            }
+        }
+        return reports;
+    }
+
+    // Reports joined with reporter/target names; reported user falls back to the note's author
+    private static final String REPORTS_SELECT = "SELECT r.*, " +
+            "u1.display_name as reporter_name, " +
+            "COALESCE(u2.display_name, u3.display_name) as reported_name, " +
+            "COALESCE(r.reported_user_id, n.user_id) as effective_reported_user_id " +
+            "FROM reports r " +
+            "LEFT JOIN users u1 ON r.reporter_id = u1.user_id " +
+            "LEFT JOIN users u2 ON r.reported_user_id = u2.user_id " +
+            "LEFT JOIN notes n ON r.reported_note_id = n.note_id " +
+            "LEFT JOIN users u3 ON n.user_id = u3.user_id ";
+    static final String ALL_REPORTS_QUERY = REPORTS_SELECT + "ORDER BY r.timestamp DESC";
+    static final String REPORTS_BY_IDS_QUERY = REPORTS_SELECT + "WHERE r.report_id = ANY(?) ORDER BY r.timestamp DESC";
+    static final String USERS_BY_IDS_QUERY = "SELECT * FROM users WHERE user_id = ANY(?) ORDER BY created_at DESC";
+    static final String USER_SANCTIONS_QUERY = "SELECT user_id, " +
+            "(CASE WHEN is_banned OR ban_expiry > 0 THEN 1 ELSE 0 END) + " +
+            "(CASE WHEN is_restricted OR restriction_expiry > 0 THEN 1 ELSE 0 END) AS sanctions " +
+            "FROM users WHERE user_id = ANY(?)";
+
+    /**
+     * Fetch only the given users (e.g. ids reported by a live-sync change event).
+     */
+    public static java.util.List<com.visiboard.pc.model.User> getUsersByIds(java.util.Collection<String> userIds) {
+        java.util.List<com.visiboard.pc.model.User> users = new java.util.ArrayList<>();
+        if (userIds == null || userIds.isEmpty()) return users;
+        try (Connection conn = getConnection();
+             java.sql.PreparedStatement pstmt = conn.prepareStatement(USERS_BY_IDS_QUERY)) {
+            pstmt.setArray(1, conn.createArrayOf("text", userIds.toArray()));
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapUser(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("Failed to fetch users by id: " + e.getMessage());
+        }
+        return users;
+    }
+
+    /**
+     * Number of sanctions (current or past ban, current or past restriction) on each of the given
+     * users. Users without any are left out.
+     */
+    public static java.util.Map<String, Integer> getUserSanctionCounts(java.util.Collection<String> userIds) {
+        java.util.Map<String, Integer> counts = new java.util.HashMap<>();
+        if (userIds == null || userIds.isEmpty()) return counts;
+        try (Connection conn = getConnection();
+             java.sql.PreparedStatement pstmt = conn.prepareStatement(USER_SANCTIONS_QUERY)) {
+            pstmt.setArray(1, conn.createArrayOf("text", userIds.toArray()));
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int sanctions = rs.getInt("sanctions");
+                    if (sanctions > 0) counts.put(rs.getString("user_id"), sanctions);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("Failed to fetch user sanctions: " + e.getMessage());
+        }
+        return counts;
+    }
+
+    /**
+     * Fetch only the given reports, with the same joined names as getAllReports().
+     */
+    public static java.util.List<com.visiboard.pc.model.Report> getReportsByIds(java.util.Collection<String> reportIds) {
+        java.util.List<com.visiboard.pc.model.Report> reports = new java.util.ArrayList<>();
+        if (reportIds == null || reportIds.isEmpty()) return reports;
+        try (Connection conn = getConnection();
+             java.sql.PreparedStatement pstmt = conn.prepareStatement(REPORTS_BY_IDS_QUERY)) {
+            pstmt.setArray(1, conn.createArrayOf("text", reportIds.toArray()));
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    reports.add(mapReport(rs));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
-            System.err.println("Failed to fetch all reports: " + e.getMessage());
+            System.err.println("Failed to fetch reports by id: " + e.getMessage());
         }
         return reports;
     }
+
+    private static com.visiboard.pc.model.User mapUser(java.sql.ResultSet rs) throws SQLException {
+        com.visiboard.pc.model.User user = new com.visiboard.pc.model.User();
+        // Map DB columns (Local Postgres Schema) to Model
+        
+        // Use user_id as the main ID for the PC app
+        String fid = rs.getString("user_id");
+        // IF user_id is null/empty check if there is another ID column? No, user_id is PK.
+        user.setId(fid);
+        user.setFirebaseUid(fid);
+        
+        user.setName(rs.getString("display_name")); // Local DB column: display_name
+        user.setEmail(rs.getString("email"));
+        user.setProfilePicUrl(rs.getString("photo_url")); // Local DB column: photo_url
+        
+        // Moderation Status
+        user.setBanned(rs.getBoolean("is_banned"));
+        user.setBanExpiry(rs.getLong("ban_expiry"));
+        user.setRestricted(rs.getBoolean("is_restricted"));
+        user.setRestrictionExpiry(rs.getLong("restriction_expiry"));
+        
+        // Handle Timestamp
+        java.sql.Timestamp ts = rs.getTimestamp("created_at");
+        if (ts != null) {
+            user.setCreatedAt(ts.getTime());
+        }
+        
+        try {
+            user.setTotalLikesReceived(rs.getInt("total_likes_received"));
+            user.setFollowersCount(rs.getInt("followers_count"));
+            user.setFollowingCount(rs.getInt("following_count"));
+        } catch (SQLException ex) {
+            // Ignore missing stats columns
+        }
+        return user;
+    }
+
+    private static com.visiboard.pc.model.Report mapReport(java.sql.ResultSet rs) throws SQLException {
+        com.visiboard.pc.model.Report report = new com.visiboard.pc.model.Report();
+        report.setReportId(rs.getString("report_id"));
+        report.setReporterId(rs.getString("reporter_id"));
+        // Use the effective ID found directly or via note
+        report.setReportedUserId(rs.getString("effective_reported_user_id"));
+        report.setReportedNoteId(rs.getString("reported_note_id"));
+        report.setReason(rs.getString("reason"));
+        report.setTargetDetails(rs.getString("target_details"));
+        report.setType(rs.getString("type"));
+        report.setCategory(rs.getString("category"));
+        report.setDescription(rs.getString("description"));
+        // timestamp is BIGINT in reports table, so getLong is safe
+        report.setTimestamp(rs.getLong("timestamp"));
+        report.setStatus(rs.getString("status"));
+
+        // Set resolved names
+        report.setReporterName(rs.getString("reporter_name"));
+        report.setReportedName(rs.getString("reported_name"));
+        return report;
+    }
+
     public static java.util.List<com.visiboard.pc.model.Note> getNotesByUserId(String userId) {
+        return READS.get(java.util.Arrays.asList("getNotesByUserId", userId), () -> fetchNotesByUserId(userId));
+    }
+
+    @SuppressWarnings("try")
+    private static java.util.List<com.visiboard.pc.model.Note> fetchNotesByUserId(String userId) {
         java.util.List<com.visiboard.pc.model.Note> notes = new java.util.ArrayList<>();
-        String query = "SELECT * FROM notes WHERE user_id = ? ORDER BY created_at DESC";
+        String query = NOTES_BY_USER_QUERY;
         try (Connection conn = getConnection();
-             java.sql.PreparedStatement pstmt = conn.prepareStatement(query)) {
+             java.sql.PreparedStatement pstmt = conn.prepareStatement(query);
+             TaskScope.Registration cancel = cancelWithScope(pstmt)) {
             
             pstmt.setString(1, userId);
             try (java.sql.ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    com.visiboard.pc.model.Note note = new com.visiboard.pc.model.Note();
-                    note.setNoteId(rs.getString("note_id"));
-                    note.setUserId(rs.getString("user_id"));
-                    note.setContent(rs.getString("content"));
-                    note.setImageUrl(rs.getString("image_url"));
-                    note.setLikesCount(rs.getInt("likes_count"));
-                    
-                    java.sql.Timestamp ts = rs.getTimestamp("created_at");
-                    if (ts != null) {
-                         note.setCreatedAt(ts.getTime()); 
-                    }
-                    notes.add(note);
+                    notes.add(mapNote(rs));
                 }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            if (!TaskScope.isCancelled()) e.printStackTrace();
         }
 
         return notes;
     }
 
     public static java.util.List<com.visiboard.pc.model.Note> getAllNotes() {
+        return READS.get("getAllNotes", () -> fetchAllNotes());
+    }
+
+    @SuppressWarnings("try")
+    private static java.util.List<com.visiboard.pc.model.Note> fetchAllNotes() {
         java.util.List<com.visiboard.pc.model.Note> notes = new java.util.ArrayList<>();
-        String query = "SELECT * FROM notes ORDER BY created_at DESC";
+        String query = ALL_NOTES_QUERY;
         try (Connection conn = getConnection();
              java.sql.PreparedStatement pstmt = conn.prepareStatement(query);
+             TaskScope.Registration cancel = cancelWithScope(pstmt);
              java.sql.ResultSet rs = pstmt.executeQuery()) {
             
             while (rs.next()) {
-                com.visiboard.pc.model.Note note = new com.visiboard.pc.model.Note();
-                note.setNoteId(rs.getString("note_id"));
-                note.setUserId(rs.getString("user_id"));
-                note.setContent(rs.getString("content"));
-                note.setImageUrl(rs.getString("image_url"));
-                note.setLatitude(rs.getDouble("latitude"));
-                note.setLongitude(rs.getDouble("longitude"));
-                note.setLikesCount(rs.getInt("likes_count"));
-                
-                java.sql.Timestamp ts = rs.getTimestamp("created_at");
-                if (ts != null) {
-                        note.setCreatedAt(ts.getTime()); 
-                }
-                notes.add(note);
+                notes.add(mapNote(rs));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            if (!TaskScope.isCancelled()) e.printStackTrace();
         }
         return notes;
     }
 
 
     
+    // --- Analytics (admin dashboard) ---
+
+    // daily_stats is maintained by triggers on users/notes/reports (migration V5)
+    static final String STATS_TOTALS_QUERY = "SELECT metric, SUM(value) AS total FROM daily_stats GROUP BY metric";
+    static final String STATS_WINDOW_QUERY = "SELECT day, metric, value FROM daily_stats WHERE day >= ?";
+
+    /**
+     * Totals plus per-day users joined, notes created, likes and reports filed/resolved for the
+     * last {@code days} days (including today). Reads only the pre-aggregated rollup, so the cost
+     * does not grow with the users/notes tables.
+     */
+    public static com.visiboard.pc.model.DashboardStats getDashboardStats(int days) {
+        return READS.get(java.util.Arrays.asList("getDashboardStats", days), () -> fetchDashboardStats(days));
+    }
+
+    @SuppressWarnings("try")
+    private static com.visiboard.pc.model.DashboardStats fetchDashboardStats(int days) {
+        java.util.Map<String, Long> totals = new java.util.HashMap<>();
+        java.util.Map<String, java.util.Map<java.time.LocalDate, Long>> perDay = new java.util.HashMap<>();
+        java.time.LocalDate first = java.time.LocalDate.now().minusDays(Math.max(days, 1) - 1);
+
+        try (Connection conn = getConnection()) {
+            try (Statement stmt = conn.createStatement();
+                 TaskScope.Registration cancel = cancelWithScope(stmt);
+                 java.sql.ResultSet rs = stmt.executeQuery(STATS_TOTALS_QUERY)) {
+                while (rs.next()) {
+                    totals.put(rs.getString("metric"), rs.getLong("total"));
+                }
+            }
+            try (java.sql.PreparedStatement pstmt = conn.prepareStatement(STATS_WINDOW_QUERY);
+                 TaskScope.Registration cancel = cancelWithScope(pstmt)) {
+                pstmt.setDate(1, java.sql.Date.valueOf(first));
+                try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        perDay.computeIfAbsent(rs.getString("metric"), m -> emptyBuckets(first, days))
+                              .put(rs.getDate("day").toLocalDate(), rs.getLong("value"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            if (!TaskScope.isCancelled()) {
+                e.printStackTrace();
+                System.err.println("Failed to load dashboard stats: " + e.getMessage());
+            }
+        }
+
+        for (String metric : com.visiboard.pc.model.DashboardStats.METRICS) {
+            perDay.computeIfAbsent(metric, m -> emptyBuckets(first, days));
+        }
+        return new com.visiboard.pc.model.DashboardStats(totals, perDay);
+    }
+
+    private static java.util.Map<java.time.LocalDate, Long> emptyBuckets(java.time.LocalDate first, int days) {
+        java.util.Map<java.time.LocalDate, Long> buckets = new java.util.LinkedHashMap<>();
+        for (int i = 0; i < Math.max(days, 1); i++) {
+            buckets.put(first.plusDays(i), 0L);
+        }
+        return buckets;
+    }
+
+    // --- Keyset paging (admin lists) ---
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(java.sql.ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Users newest first, {@code limit} at a time. Pass the previous page's cursor
+     * ({@link KeysetPage#getAfterKey()} / {@link KeysetPage#getAfterId()}), or nulls for the first page.
+     * Unlike the getAll* reads, a failed page query throws instead of returning an empty page.
+     */
+    public static KeysetPage<com.visiboard.pc.model.User> getUsersPage(java.sql.Timestamp afterCreatedAt, String afterId, int limit) {
+        return getUsersPage(null, "All", afterCreatedAt, afterId, limit);
+    }
+
+    /**
+     * Users page filtered by a name/email search and a status filter ("All", "Active", "Restricted", "Banned").
+     */
+    public static KeysetPage<com.visiboard.pc.model.User> getUsersPage(String search, String statusFilter,
+                                                                       java.sql.Timestamp afterCreatedAt, String afterId, int limit) {
+        java.util.List<Object> params = new java.util.ArrayList<>();
+        if (search != null && !search.isBlank()) {
+            String pattern = "%" + search.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            params.add(pattern);
+            params.add(pattern);
+        }
+        if (afterCreatedAt != null) {
+            params.add(afterCreatedAt);
+            params.add(afterId);
+        }
+        params.add(limit + 1);
+        String sql = usersPageSql(search != null && !search.isBlank(), statusFilter, afterCreatedAt != null);
+        return readPage(sql, params, limit, DatabaseService::mapUser, "created_at", "user_id", "users");
+    }
+
+    static String usersPageSql(boolean withSearch, String statusFilter, boolean afterCursor) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM users WHERE TRUE");
+        if (withSearch) {
+            sql.append(" AND (display_name ILIKE ? OR email ILIKE ?)");
+        }
+        if ("Active".equals(statusFilter)) {
+            sql.append(" AND NOT COALESCE(is_banned, FALSE) AND NOT COALESCE(is_restricted, FALSE)");
+        } else if ("Restricted".equals(statusFilter)) {
+            sql.append(" AND is_restricted");
+        } else if ("Banned".equals(statusFilter)) {
+            sql.append(" AND is_banned");
+        }
+        if (afterCursor) {
+            sql.append(" AND (created_at, user_id) < (?, ?)");
+        }
+        return sql.append(" ORDER BY created_at DESC, user_id DESC LIMIT ?").toString();
+    }
+
+    /**
+     * Notes newest first, {@code limit} at a time (see {@link #getUsersPage(java.sql.Timestamp, String, int)}).
+     */
+    public static KeysetPage<com.visiboard.pc.model.Note> getNotesPage(java.sql.Timestamp afterCreatedAt, String afterId, int limit) {
+        java.util.List<Object> params = new java.util.ArrayList<>();
+        if (afterCreatedAt != null) {
+            params.add(afterCreatedAt);
+            params.add(afterId);
+        }
+        params.add(limit + 1);
+        return readPage(notesPageSql(afterCreatedAt != null), params, limit, DatabaseService::mapNote, "created_at", "note_id", "notes");
+    }
+
+    static String notesPageSql(boolean afterCursor) {
+        return "SELECT * FROM notes" +
+               (afterCursor ? " WHERE (created_at, note_id) < (?, ?)" : "") +
+               " ORDER BY created_at DESC, note_id DESC LIMIT ?";
+    }
+
+    /**
+     * Reports newest first, either those against notes or those against user profiles.
+     */
+    public static KeysetPage<com.visiboard.pc.model.Report> getReportsPage(boolean noteReports, Long afterTimestamp, String afterId, int limit) {
+        java.util.List<Object> params = new java.util.ArrayList<>();
+        if (afterTimestamp != null) {
+            params.add(afterTimestamp);
+            params.add(afterId);
+        }
+        params.add(limit + 1);
+        return readPage(reportsPageSql(noteReports, afterTimestamp != null), params, limit, DatabaseService::mapReport,
+                        "timestamp", "report_id", "reports");
+    }
+
+    static String reportsPageSql(boolean noteReports, boolean afterCursor) {
+        return REPORTS_SELECT +
+               (noteReports ? "WHERE r.reported_note_id IS NOT NULL AND r.reported_note_id <> '' "
+                            : "WHERE (r.reported_note_id IS NULL OR r.reported_note_id = '') ") +
+               (afterCursor ? "AND (r.timestamp, r.report_id) < (?, ?) " : "") +
+               "ORDER BY r.timestamp DESC, r.report_id DESC LIMIT ?";
+    }
+
+    /**
+     * One page of pending reports grouped by target (a note, or a user for user reports), most
+     * recently reported first. A note reported 200 times is one row with a count of 200.
+     */
+    public static KeysetPage<com.visiboard.pc.model.ReportGroup> getReportGroupsPage(boolean noteTargets, Long afterLastReportedAt,
+                                                                                      String afterTargetId, int limit) {
+        java.util.List<Object> params = new java.util.ArrayList<>();
+        if (afterLastReportedAt != null) {
+            params.add(afterLastReportedAt);
+            params.add(afterTargetId);
+        }
+        params.add(limit + 1);
+        return readPage(reportGroupsPageSql(noteTargets, afterLastReportedAt != null), params, limit, DatabaseService::mapReportGroup,
+                        "last_reported_at", "target_id", "report groups");
+    }
+
+    // Aggregates in SQL; '' note ids count as user reports, the same split as reportsPageSql.
+    // The keyset bound is a HAVING inside the aggregate and the page is cut there, so the
+    // joins only see one page of groups.
+    static String reportGroupsPageSql(boolean noteTargets, boolean afterCursor) {
+        String target = noteTargets ? "reported_note_id" : "reported_user_id";
+        return "SELECT g.*, " +
+               (noteTargets ? "'NOTE' AS target_type, n.user_id AS effective_reported_user_id, nu.display_name AS reported_name, LEFT(n.content, 200) AS target_details "
+                            : "'USER' AS target_type, g.target_id AS effective_reported_user_id, u.display_name AS reported_name, NULL AS target_details ") +
+               "FROM (SELECT " + target + " AS target_id, " +
+               "COUNT(*) AS report_count, COUNT(DISTINCT reporter_id) AS reporter_count, " +
+               "array_agg(DISTINCT COALESCE(NULLIF(category, ''), 'OTHER')) AS categories, " +
+               "MIN(timestamp) AS first_reported_at, MAX(timestamp) AS last_reported_at " +
+               "FROM reports WHERE status = 'PENDING' " +
+               (noteTargets ? "AND reported_note_id IS NOT NULL AND reported_note_id <> '' "
+                            : "AND (reported_note_id IS NULL OR reported_note_id = '') AND reported_user_id IS NOT NULL ") +
+               "GROUP BY " + target + " " +
+               (afterCursor ? "HAVING (MAX(timestamp), " + target + ") < (?, ?) " : "") +
+               "ORDER BY MAX(timestamp) DESC, " + target + " DESC LIMIT ?) g " +
+               (noteTargets ? "LEFT JOIN notes n ON n.note_id = g.target_id LEFT JOIN users nu ON nu.user_id = n.user_id "
+                            : "LEFT JOIN users u ON u.user_id = g.target_id ") +
+               "ORDER BY g.last_reported_at DESC, g.target_id DESC";
+    }
+
+    private static com.visiboard.pc.model.ReportGroup mapReportGroup(java.sql.ResultSet rs) throws SQLException {
+        com.visiboard.pc.model.ReportGroup group = new com.visiboard.pc.model.ReportGroup();
+        group.setTargetId(rs.getString("target_id"));
+        group.setTargetType(rs.getString("target_type"));
+        group.setReportedUserId(rs.getString("effective_reported_user_id"));
+        group.setReportedName(rs.getString("reported_name"));
+        group.setTargetDetails(rs.getString("target_details"));
+        group.setReportCount(rs.getInt("report_count"));
+        group.setReporterCount(rs.getInt("reporter_count"));
+        java.sql.Array categories = rs.getArray("categories");
+        group.setCategories(categories == null ? java.util.Collections.emptyList()
+                                               : java.util.Arrays.asList((String[]) categories.getArray()));
+        group.setFirstReportedAt(rs.getLong("first_reported_at"));
+        group.setLastReportedAt(rs.getLong("last_reported_at"));
+        return group;
+    }
+
+    // Reads up to limit + 1 rows: the extra row only tells us whether another page exists
+    private static <T> KeysetPage<T> readPage(String sql, java.util.List<Object> params, int limit, RowMapper<T> mapper,
+                                              String keyColumn, String idColumn, String what) {
+        return READS.get(java.util.Arrays.asList(sql, params, limit), () -> fetchPage(sql, params, limit, mapper, keyColumn, idColumn, what));
+    }
+
+    @SuppressWarnings("try")
+    private static <T> KeysetPage<T> fetchPage(String sql, java.util.List<Object> params, int limit, RowMapper<T> mapper,
+                                               String keyColumn, String idColumn, String what) {
+        java.util.List<T> items = new java.util.ArrayList<>();
+        Object lastKey = null;
+        String lastId = null;
+        boolean hasMore = false;
+        try (Connection conn = getConnection();
+             java.sql.PreparedStatement pstmt = conn.prepareStatement(sql);
+             TaskScope.Registration cancel = cancelWithScope(pstmt)) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (items.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    items.add(mapper.map(rs));
+                    lastKey = rs.getObject(keyColumn);
+                    lastId = rs.getString(idColumn);
+                }
+            }
+        } catch (SQLException e) {
+            // A cancelled load's partial page is discarded anyway (see SingleFlight.get)
+            if (!TaskScope.isCancelled()) {
+                e.printStackTrace();
+                System.err.println("Failed to fetch " + what + " page: " + e.getMessage());
+                // An empty last page would end paging for good; let the list show the error and retry
+                throw new RuntimeException("Failed to fetch " + what + " page", e);
+            }
+        }
+        return new KeysetPage<>(items, lastKey, lastId, hasMore);
+    }
+
+    // Lets the view's TaskScope cancel the query on the server if the view goes away mid-query.
+    // Callers hold the registration as a try resource only so closing it removes the hook; the
+    // body never touches it, hence their @SuppressWarnings("try").
+    private static TaskScope.Registration cancelWithScope(Statement stmt) {
+        return TaskScope.onCancel(() -> {
+            try {
+                stmt.cancel();
+            } catch (SQLException e) {
+                // Statement already finished or closed
+            }
+        });
+    }
+
+    /**
+     * Single note by id (primary-key lookup), or null if it isn't in the local database.
+     */
+    public static com.visiboard.pc.model.Note getNoteById(String noteId) {
+        return READS.get(java.util.Arrays.asList("getNoteById", noteId), () -> fetchNoteById(noteId));
+    }
+
+    private static com.visiboard.pc.model.Note fetchNoteById(String noteId) {
+        if (noteId == null) return null;
+        try (Connection conn = getConnection();
+             java.sql.PreparedStatement pstmt = conn.prepareStatement(NOTE_BY_ID_QUERY)) {
+            pstmt.setString(1, noteId);
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapNote(rs);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("Failed to fetch note " + noteId + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Single user by id (primary-key lookup), or null if it isn't in the local database.
+     */
+    public static com.visiboard.pc.model.User getUserById(String userId) {
+        return READS.get(java.util.Arrays.asList("getUserById", userId), () -> fetchUserById(userId));
+    }
+
+    private static com.visiboard.pc.model.User fetchUserById(String userId) {
+        if (userId == null) return null;
+        try (Connection conn = getConnection();
+             java.sql.PreparedStatement pstmt = conn.prepareStatement(USER_BY_ID_QUERY)) {
+            pstmt.setString(1, userId);
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapUser(rs);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("Failed to fetch user " + userId + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static com.visiboard.pc.model.Note mapNote(java.sql.ResultSet rs) throws SQLException {
+        com.visiboard.pc.model.Note note = new com.visiboard.pc.model.Note();
+        note.setNoteId(rs.getString("note_id"));
+        note.setUserId(rs.getString("user_id"));
+        note.setContent(rs.getString("content"));
+        note.setImageUrl(rs.getString("image_url"));
+        note.setLatitude(rs.getDouble("latitude"));
+        note.setLongitude(rs.getDouble("longitude"));
+        note.setLikesCount(rs.getInt("likes_count"));
+
+        java.sql.Timestamp ts = rs.getTimestamp("created_at");
+        if (ts != null) {
+            note.setCreatedAt(ts.getTime());
+        }
+        return note;
+    }
+
     // Separate method for Warn if column missing, just log/notification for now
     public static void warnUser(String userId) {
          // In real impl, create notification. For now, just log.
@@ -390,10 +778,14 @@ public class DatabaseService {
 
     public static void deleteNote(String noteId) {
         String sql = "DELETE FROM notes WHERE note_id = ?";
-        try (Connection conn = getConnection();
-             java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, noteId);
-            pstmt.executeUpdate();
+        try {
+            inTransaction(conn -> {
+                try (java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, noteId);
+                    pstmt.executeUpdate();
+                }
+                FirestoreOutbox.delete(conn, "notes", noteId);
+            });
             System.out.println("Deleted note: " + noteId);
         } catch (SQLException e) {
             e.printStackTrace();
@@ -402,10 +794,14 @@ public class DatabaseService {
 
     public static void dismissReport(String reportId) {
         String sql = "DELETE FROM reports WHERE report_id = ?";
-        try (Connection conn = getConnection();
-             java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, reportId);
-            pstmt.executeUpdate();
+        try {
+            inTransaction(conn -> {
+                try (java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, reportId);
+                    pstmt.executeUpdate();
+                }
+                FirestoreOutbox.delete(conn, "reports", reportId);
+            });
             System.out.println("Dismissed (deleted) report: " + reportId);
         } catch (SQLException e) {
              e.printStackTrace();
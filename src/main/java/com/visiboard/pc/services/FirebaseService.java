@@ -1,6 +1,9 @@
 package com.visiboard.pc.services;
 
 import com.google.auth.oauth2.GoogleCredentials;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.firestore.Firestore;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
@@ -8,6 +11,7 @@ import com.google.firebase.cloud.FirestoreClient;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 public class FirebaseService {
 
@@ -39,41 +43,26 @@ public class FirebaseService {
         return firestore;
     }
 
-    public static void deleteNote(String noteId) {
-        try {
-             getFirestore().collection("notes").document(noteId).delete().get();
-             System.out.println("Deleted note from Firebase: " + noteId);
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Failed to delete note from Firebase: " + e.getMessage());
-        }
+    /**
+     * Starts a batch for the Firestore writes of one admin action; see {@link FirestoreBatch}.
+     */
+    public static FirestoreBatch batch() {
+        return new FirestoreBatch(getFirestore());
     }
 
-    public static void sendNotification(java.util.Map<String, Object> data) {
-        try {
-            getFirestore().collection("notifications").add(data).get();
-            System.out.println("Sent notification to Firebase.");
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Failed to send notification to Firebase: " + e.getMessage());
-        }
-    }
-    public static void updateUserField(String userId, String field, Object value) {
-        try {
-             getFirestore().collection("users").document(userId).update(field, value).get();
-             System.out.println("Updated user " + userId + " field " + field + " to " + value + " in Firebase.");
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Failed to update user field in Firebase: " + e.getMessage());
-        }
-    }
-    public static void deleteReport(String reportId) {
-        try {
-             getFirestore().collection("reports").document(reportId).delete().get();
-             System.out.println("Deleted report from Firebase: " + reportId);
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Failed to delete report from Firebase: " + e.getMessage());
-        }
+    static <T> CompletableFuture<T> toCompletable(ApiFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, Runnable::run);
+        return result;
     }
 }
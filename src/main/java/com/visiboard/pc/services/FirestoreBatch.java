@@ -0,0 +1,87 @@
+package com.visiboard.pc.services;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collects the Firestore writes of one admin action and commits them together.
+ *
+ * A WriteBatch is atomic and goes out as a single commit RPC, so e.g. banning a user, deleting
+ * the report and notifying both parties costs one round-trip instead of one per write. Nothing
+ * is sent until {@link #commit()}. Firestore caps a batch at {@value #MAX_WRITES} writes.
+ */
+public final class FirestoreBatch {
+
+    public static final int MAX_WRITES = 500;
+
+    private final Firestore firestore;
+    private final WriteBatch batch;
+    private int writes;
+    private boolean committed;
+
+    FirestoreBatch(Firestore firestore) {
+        this.firestore = firestore;
+        this.batch = firestore.batch();
+    }
+
+    public FirestoreBatch delete(String collection, String documentId) {
+        batch.delete(document(collection, documentId));
+        return this;
+    }
+
+    public FirestoreBatch update(String collection, String documentId, Map<String, Object> fields) {
+        batch.update(document(collection, documentId), fields);
+        return this;
+    }
+
+    public FirestoreBatch set(String collection, String documentId, Map<String, Object> data) {
+        batch.set(document(collection, documentId), data);
+        return this;
+    }
+
+    public int size() {
+        return writes;
+    }
+
+    /**
+     * Sends all collected writes in one commit. An empty batch completes immediately.
+     */
+    public CompletableFuture<Void> commit() {
+        if (committed) {
+            throw new IllegalStateException("Firestore batch already committed");
+        }
+        committed = true;
+        if (writes == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int count = writes;
+        return FirebaseService.toCompletable(batch.commit())
+                .<Void>thenApply(results -> null)
+                .whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        System.out.println("Committed " + count + " Firebase writes in one batch.");
+                    } else {
+                        System.err.println("Failed to commit Firebase batch of " + count + " writes: " + error.getMessage());
+                    }
+                });
+    }
+
+    private DocumentReference document(String collection, String documentId) {
+        return reserve().collection(collection).document(documentId);
+    }
+
+    private Firestore reserve() {
+        if (committed) {
+            throw new IllegalStateException("Firestore batch already committed");
+        }
+        if (writes >= MAX_WRITES) {
+            throw new IllegalStateException("Firestore batch is limited to " + MAX_WRITES + " writes");
+        }
+        writes++;
+        return firestore;
+    }
+}
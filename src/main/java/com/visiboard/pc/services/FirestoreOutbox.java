@@ -0,0 +1,223 @@
+package com.visiboard.pc.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code firestore_outbox} table: Firestore writes queued on the caller's connection, so
+ * they commit or roll back together with the local change. {@link OutboxDispatcher} sends them.
+ */
+final class FirestoreOutbox {
+
+    enum Operation { SET, UPDATE, DELETE }
+
+    static final class Entry {
+        final long id;
+        final String collection;
+        final String documentId;
+        final Operation operation;
+        final Map<String, Object> data;
+        final int attempts;
+
+        Entry(long id, String collection, String documentId, Operation operation, Map<String, Object> data, int attempts) {
+            this.id = id;
+            this.collection = collection;
+            this.documentId = documentId;
+            this.operation = operation;
+            this.data = data;
+            this.attempts = attempts;
+        }
+
+        String documentPath() {
+            return collection + "/" + documentId;
+        }
+
+        void addTo(FirestoreBatch batch) {
+            switch (operation) {
+                case SET: batch.set(collection, documentId, data); break;
+                case UPDATE: batch.update(collection, documentId, data); break;
+                case DELETE: batch.delete(collection, documentId); break;
+            }
+        }
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final String INSERT_SQL =
+            "INSERT INTO firestore_outbox (collection, document_id, operation, payload, created_at, next_attempt_at) " +
+            "VALUES (?, ?, ?, CAST(? AS jsonb), ?, ?)";
+
+    // Takes due rows oldest first and pushes next_attempt_at out by the lease, so another
+    // dispatcher (or this one after a crash) only picks them up again once the lease expires.
+    // Only the oldest live row per document is eligible: a later write never overtakes one that
+    // is still in flight or waiting to be retried, but dead-lettered rows no longer hold it back.
+    private static final String CLAIM_SQL =
+            "UPDATE firestore_outbox SET next_attempt_at = ? WHERE id IN (" +
+            "SELECT o.id FROM firestore_outbox o WHERE o.dead_lettered_at IS NULL AND o.next_attempt_at <= ? " +
+            "AND NOT EXISTS (SELECT 1 FROM firestore_outbox older WHERE older.dead_lettered_at IS NULL " +
+            "AND older.collection = o.collection AND older.document_id = o.document_id AND older.id < o.id) " +
+            "ORDER BY o.id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, collection, document_id, operation, payload::text, attempts";
+
+    private FirestoreOutbox() {
+    }
+
+    static void set(Connection conn, String collection, String documentId, Map<String, Object> data) throws SQLException {
+        append(conn, collection, documentId, Operation.SET, data);
+    }
+
+    static void update(Connection conn, String collection, String documentId, Map<String, Object> fields) throws SQLException {
+        append(conn, collection, documentId, Operation.UPDATE, fields);
+    }
+
+    static void delete(Connection conn, String collection, String documentId) throws SQLException {
+        append(conn, collection, documentId, Operation.DELETE, null);
+    }
+
+    private static void append(Connection conn, String collection, String documentId, Operation operation, Map<String, Object> data) throws SQLException {
+        try (Batch batch = batch(conn)) {
+            batch.add(collection, documentId, operation, data);
+            batch.execute();
+        }
+    }
+
+    /**
+     * Queues many writes with one batched INSERT; see {@link Batch}.
+     */
+    static Batch batch(Connection conn) throws SQLException {
+        return new Batch(conn.prepareStatement(INSERT_SQL));
+    }
+
+    /**
+     * Collects outbox rows on one PreparedStatement and inserts them in a single JDBC batch.
+     */
+    static final class Batch implements AutoCloseable {
+        private final PreparedStatement pstmt;
+        private final long now = System.currentTimeMillis();
+        private int size;
+
+        private Batch(PreparedStatement pstmt) {
+            this.pstmt = pstmt;
+        }
+
+        void set(String collection, String documentId, Map<String, Object> data) throws SQLException {
+            add(collection, documentId, Operation.SET, data);
+        }
+
+        void update(String collection, String documentId, Map<String, Object> fields) throws SQLException {
+            add(collection, documentId, Operation.UPDATE, fields);
+        }
+
+        void delete(String collection, String documentId) throws SQLException {
+            add(collection, documentId, Operation.DELETE, null);
+        }
+
+        private void add(String collection, String documentId, Operation operation, Map<String, Object> data) throws SQLException {
+            // Firestore would reject the path on every attempt; fail the caller's transaction instead
+            if (collection == null || collection.isBlank() || documentId == null || documentId.isBlank()) {
+                throw new SQLException("Outbox " + operation + " needs a collection and document id, got " +
+                                       collection + "/" + documentId);
+            }
+            pstmt.setString(1, collection);
+            pstmt.setString(2, documentId);
+            pstmt.setString(3, operation.name());
+            pstmt.setString(4, data == null ? null : toJson(data));
+            pstmt.setLong(5, now);
+            pstmt.setLong(6, now);
+            pstmt.addBatch();
+            size++;
+        }
+
+        void execute() throws SQLException {
+            if (size > 0) {
+                pstmt.executeBatch();
+                size = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            pstmt.close();
+        }
+    }
+
+    static List<Entry> claim(Connection conn, int limit, long leaseMillis) throws SQLException {
+        long now = System.currentTimeMillis();
+        List<Entry> entries = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(CLAIM_SQL)) {
+            pstmt.setLong(1, now + leaseMillis);
+            pstmt.setLong(2, now);
+            pstmt.setInt(3, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String payload = rs.getString(5);
+                    entries.add(new Entry(rs.getLong(1), rs.getString(2), rs.getString(3),
+                            Operation.valueOf(rs.getString(4)), payload == null ? null : fromJson(payload), rs.getInt(6)));
+                }
+            }
+        }
+        // RETURNING has no defined order; send in queue order
+        entries.sort((a, b) -> Long.compare(a.id, b.id));
+        return entries;
+    }
+
+    static void complete(Connection conn, List<Entry> entries) throws SQLException {
+        Long[] ids = new Long[entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = entries.get(i).id;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM firestore_outbox WHERE id = ANY(?)")) {
+            pstmt.setArray(1, conn.createArrayOf("bigint", ids));
+            pstmt.executeUpdate();
+        }
+    }
+
+    static void retryLater(Connection conn, Entry entry, long retryAt, String error) throws SQLException {
+        String sql = "UPDATE firestore_outbox SET next_attempt_at = ?, attempts = attempts + 1, last_error = ? WHERE id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, retryAt);
+            pstmt.setString(2, error);
+            pstmt.setLong(3, entry.id);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Parks a row that will never be accepted. It stays in the table with its error for
+     * inspection but is no longer claimed; see V7__outbox_dead_letter.sql.
+     */
+    static void deadLetter(Connection conn, Entry entry, String error) throws SQLException {
+        String sql = "UPDATE firestore_outbox SET dead_lettered_at = ?, attempts = attempts + 1, last_error = ? WHERE id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, System.currentTimeMillis());
+            pstmt.setString(2, error);
+            pstmt.setLong(3, entry.id);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static String toJson(Map<String, Object> data) throws SQLException {
+        try {
+            return JSON.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Failed to encode outbox payload", e);
+        }
+    }
+
+    private static Map<String, Object> fromJson(String payload) throws SQLException {
+        try {
+            return JSON.readValue(payload, new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Failed to decode outbox payload", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.visiboard.pc.services;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated query, plus the cursor for the next one.
+ *
+ * The cursor is the sort key and id of the last row exactly as the database returned them
+ * (e.g. a microsecond {@link java.sql.Timestamp}), so the next page starts strictly after it.
+ * Pass {@code null} as the previous page to read the first one.
+ */
+public final class KeysetPage<T> {
+
+    private final List<T> items;
+    private final Object afterKey;
+    private final String afterId;
+    private final boolean hasMore;
+
+    KeysetPage(List<T> items, Object afterKey, String afterId, boolean hasMore) {
+        this.items = items;
+        this.afterKey = afterKey;
+        this.afterId = afterId;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public Object getAfterKey() {
+        return afterKey;
+    }
+
+    public String getAfterId() {
+        return afterId;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,359 @@
+package com.visiboard.pc.services;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.visiboard.pc.util.ConcurrencyManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Real-time sync: a Firestore snapshot listener per collection feeds document changes into
+ * a coalescing buffer (last change per document wins), which is flushed to PostgreSQL as one
+ * small transaction every few hundred milliseconds or as soon as a batch fills up.
+ *
+ * Listeners never watch a bare collection, whose first snapshot would re-read every document on
+ * each launch. A collection with an updated-at watermark is followed past the stored mark; one
+ * with only a creation time is followed for documents created since the startup sync began; one
+ * with neither (users, notes by default) is left to the startup sync. A listener reports the
+ * deletion of any document in its result set; older documents deleted meanwhile are removed by
+ * the next full read (see SyncPipeline).
+ *
+ * If a batch fails, its changes are applied one at a time so a single bad row (e.g. a user
+ * delete blocked by a foreign key) cannot take the rest down with it. Rows that still fail are
+ * retried with the next flushes, up to {@link #MAX_ATTEMPTS} times.
+ */
+final class LiveSync {
+
+    // Max delay before buffered changes hit PostgreSQL (-Dvisiboard.sync.liveFlushMs)
+    private static final long FLUSH_INTERVAL_MS = Long.getLong("visiboard.sync.liveFlushMs", 500L);
+
+    // Flushes a failing change is retried in before it is dropped (-Dvisiboard.sync.liveMaxAttempts)
+    private static final int MAX_ATTEMPTS = Integer.getInteger("visiboard.sync.liveMaxAttempts", 5);
+
+    // Marks a removed document in the pending buffer
+    private static final Object[] REMOVED = new Object[0];
+
+    // Upserts run in this order (FK: users before notes); deletes run in reverse
+    private static final List<SyncTable> TABLES = List.of(SyncTable.USERS, SyncTable.NOTES, SyncTable.REPORTS, SyncTable.NOTIFICATIONS);
+
+    private final Map<SyncTable, LinkedHashMap<String, Object[]>> pending = new HashMap<>();
+    private final Map<SyncTable, SyncPipeline.Watermark> watermarks = new ConcurrentHashMap<>();
+    private final List<ListenerRegistration> registrations = new ArrayList<>();
+    private final List<SyncChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    // Failed attempts per "collection/id"; only touched by flush()
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    LiveSync() {
+        for (SyncTable table : TABLES) {
+            pending.put(table, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * @param since epoch millis the startup sync began reading at; documents created after it
+     *              are followed in collections without a watermark
+     */
+    synchronized void start(long since) {
+        if (flusher != null) return;
+
+        flusher = ConcurrencyManager.register("live-sync",
+                new ScheduledThreadPoolExecutor(1, ConcurrencyManager.threadFactory("VisiBoard-LiveSync")));
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        Firestore db = FirebaseService.getFirestore();
+        List<SyncTable> followed = new ArrayList<>();
+        for (SyncTable table : TABLES) {
+            SyncPipeline.Watermark watermark = SyncPipeline.loadWatermark(table);
+            watermarks.put(table, watermark);
+            Query query = liveQuery(db, table, watermark, since);
+            if (query == null) continue;
+            registrations.add(query.addSnapshotListener((snapshot, error) -> onSnapshot(table, snapshot, error)));
+            followed.add(table);
+        }
+        System.out.println("[LiveSync] Listening on " + followed);
+    }
+
+    // The narrowest query that still sees every later change, or null if there is none
+    private static Query liveQuery(Firestore db, SyncTable table, SyncPipeline.Watermark watermark, long since) {
+        if (table.watermarkField != null && watermark.isSet()) {
+            return db.collection(table.collection).whereGreaterThan(table.watermarkField, watermark.toFirestoreValue());
+        }
+        if (table.createdField != null) {
+            return db.collection(table.collection).whereGreaterThan(table.createdField, since);
+        }
+        return null;
+    }
+
+    synchronized void stop() {
+        for (ListenerRegistration registration : registrations) {
+            registration.remove();
+        }
+        registrations.clear();
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        flush();
+        System.out.println("[LiveSync] Stopped.");
+    }
+
+    void addChangeListener(SyncChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    void removeChangeListener(SyncChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    private void onSnapshot(SyncTable table, QuerySnapshot snapshot, Exception error) {
+        if (error != null) {
+            System.err.println("[LiveSync] Listener error on " + table + ": " + error.getMessage());
+            return;
+        }
+        if (snapshot == null || snapshot.getDocumentChanges().isEmpty()) return;
+
+        boolean full;
+        synchronized (pending) {
+            LinkedHashMap<String, Object[]> buffer = pending.get(table);
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                DocumentSnapshot doc = change.getDocument();
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    // Re-insert so a document keeps its latest position in the buffer
+                    buffer.remove(doc.getId());
+                    buffer.put(doc.getId(), REMOVED);
+                    continue;
+                }
+                Object watermarkValue = table.watermarkField != null ? doc.get(table.watermarkField) : null;
+                try {
+                    Object[] row = table.decoder.decode(doc);
+                    buffer.remove(doc.getId());
+                    buffer.put(doc.getId(), row);
+                    // Only rows that will actually be written may move the watermark
+                    watermarks.put(table, watermarks.get(table).advance(watermarkValue));
+                } catch (RuntimeException e) {
+                    System.err.println("[LiveSync] Failed to decode " + table + "/" + doc.getId() + ": " + e.getMessage());
+                }
+            }
+            full = buffer.size() >= SyncPipeline.BATCH_SIZE;
+        }
+
+        ScheduledExecutorService current = flusher;
+        if (full && current != null) {
+            current.execute(this::flush);
+        }
+    }
+
+    /**
+     * Writes everything buffered so far in one transaction, then notifies change listeners.
+     */
+    private void flush() {
+        Map<SyncTable, LinkedHashMap<String, Object[]>> batch = new LinkedHashMap<>();
+        Map<SyncTable, SyncPipeline.Watermark> batchWatermarks;
+        synchronized (pending) {
+            for (SyncTable table : TABLES) {
+                LinkedHashMap<String, Object[]> buffer = pending.get(table);
+                if (!buffer.isEmpty()) {
+                    batch.put(table, new LinkedHashMap<>(buffer));
+                    buffer.clear();
+                }
+            }
+            batchWatermarks = new HashMap<>(watermarks);
+        }
+        if (batch.isEmpty()) return;
+
+        Map<SyncTable, Set<String>> upserted = new LinkedHashMap<>();
+        Map<SyncTable, Set<String>> removed = new LinkedHashMap<>();
+        Map<SyncTable, SyncPipeline.Watermark> touchedWatermarks = new HashMap<>();
+        for (SyncTable table : batch.keySet()) {
+            if (table.watermarkField != null) touchedWatermarks.put(table, batchWatermarks.get(table));
+        }
+
+        try {
+            applyInTransaction(batch, touchedWatermarks, upserted, removed);
+            if (!failures.isEmpty()) {
+                for (Map.Entry<SyncTable, LinkedHashMap<String, Object[]>> entry : batch.entrySet()) {
+                    for (String id : entry.getValue().keySet()) {
+                        failures.remove(entry.getKey().collection + "/" + id);
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (isConnectionError(e)) {
+                // Nothing is wrong with the rows; keep all of them for the next flush
+                System.err.println("[LiveSync] Database unavailable, keeping " + size(batch) + " changes: " + e.getMessage());
+                requeueAll(batch);
+                return;
+            }
+            System.err.println("[LiveSync] Batch of " + size(batch) + " failed, applying changes one by one: " + e.getMessage());
+            applyIndividually(batch, touchedWatermarks, upserted, removed);
+        }
+
+        for (SyncTable table : batch.keySet()) {
+            Set<String> up = upserted.getOrDefault(table, Collections.emptySet());
+            Set<String> rm = removed.getOrDefault(table, Collections.emptySet());
+            System.out.println("[LiveSync] " + table + ": " + up.size() + " upserted, " + rm.size() + " removed.");
+            for (SyncChangeListener listener : changeListeners) {
+                try {
+                    listener.onChange(table.collection, up, rm);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // One transaction for the whole batch; the result maps are only filled in once it commits
+    private void applyInTransaction(Map<SyncTable, ? extends Map<String, Object[]>> batch,
+                                    Map<SyncTable, SyncPipeline.Watermark> batchWatermarks,
+                                    Map<SyncTable, Set<String>> upserted, Map<SyncTable, Set<String>> removed) throws SQLException {
+        Map<SyncTable, Set<String>> up = new LinkedHashMap<>();
+        Map<SyncTable, Set<String>> rm = new LinkedHashMap<>();
+        try (Connection conn = DatabaseService.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<SyncTable> deleteOrder = new ArrayList<>(TABLES);
+                Collections.reverse(deleteOrder);
+                for (SyncTable table : deleteOrder) {
+                    if (batch.containsKey(table)) {
+                        rm.put(table, deleteRemoved(conn, table, batch.get(table)));
+                    }
+                }
+                for (SyncTable table : TABLES) {
+                    if (batch.containsKey(table)) {
+                        up.put(table, upsertChanged(conn, table, batch.get(table)));
+                    }
+                    if (batchWatermarks.containsKey(table)) {
+                        SyncPipeline.saveWatermark(conn, table, batchWatermarks.get(table), false);
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        up.forEach((table, ids) -> upserted.computeIfAbsent(table, t -> new LinkedHashSet<>()).addAll(ids));
+        rm.forEach((table, ids) -> removed.computeIfAbsent(table, t -> new LinkedHashSet<>()).addAll(ids));
+    }
+
+    // Fallback after a failed batch: deletes (children first) and then upserts, one transaction each
+    private void applyIndividually(Map<SyncTable, LinkedHashMap<String, Object[]>> batch,
+                                   Map<SyncTable, SyncPipeline.Watermark> batchWatermarks,
+                                   Map<SyncTable, Set<String>> upserted, Map<SyncTable, Set<String>> removed) {
+        List<SyncTable> deleteOrder = new ArrayList<>(TABLES);
+        Collections.reverse(deleteOrder);
+        for (boolean deletes : new boolean[] {true, false}) {
+            for (SyncTable table : deletes ? deleteOrder : TABLES) {
+                Map<String, Object[]> changes = batch.get(table);
+                if (changes == null) continue;
+                for (Map.Entry<String, Object[]> change : changes.entrySet()) {
+                    if ((change.getValue() == REMOVED) != deletes) continue;
+                    String key = table.collection + "/" + change.getKey();
+                    try {
+                        applyInTransaction(Map.of(table, Map.of(change.getKey(), change.getValue())),
+                                Collections.emptyMap(), upserted, removed);
+                        failures.remove(key);
+                    } catch (SQLException | RuntimeException e) {
+                        retryLater(table, change.getKey(), change.getValue(), e);
+                    }
+                }
+            }
+        }
+        try {
+            // Rows that failed are still queued; a dropped one comes back with the next full resync
+            applyInTransaction(Collections.emptyMap(), batchWatermarks, upserted, removed);
+        } catch (SQLException e) {
+            System.err.println("[LiveSync] Failed to save sync watermarks: " + e.getMessage());
+        }
+    }
+
+    private void retryLater(SyncTable table, String id, Object[] change, Exception error) {
+        String key = table.collection + "/" + id;
+        int attempts = failures.merge(key, 1, Integer::sum);
+        if (attempts >= MAX_ATTEMPTS) {
+            failures.remove(key);
+            System.err.println("[LiveSync] Dropping change to " + key + " after " + attempts + " attempts: " + error.getMessage());
+            return;
+        }
+        System.err.println("[LiveSync] Change to " + key + " failed (attempt " + attempts + "), retrying: " + error.getMessage());
+        synchronized (pending) {
+            // A newer change that arrived in the meantime wins
+            pending.get(table).putIfAbsent(id, change);
+        }
+    }
+
+    private void requeueAll(Map<SyncTable, LinkedHashMap<String, Object[]>> batch) {
+        synchronized (pending) {
+            for (Map.Entry<SyncTable, LinkedHashMap<String, Object[]>> entry : batch.entrySet()) {
+                LinkedHashMap<String, Object[]> buffer = pending.get(entry.getKey());
+                for (Map.Entry<String, Object[]> change : entry.getValue().entrySet()) {
+                    buffer.putIfAbsent(change.getKey(), change.getValue());
+                }
+            }
+        }
+    }
+
+    // SQLSTATE class 08: the connection failed, not the statement
+    private static boolean isConnectionError(Exception e) {
+        if (!(e instanceof SQLException)) return false;
+        String state = ((SQLException) e).getSQLState();
+        return state != null && state.startsWith("08");
+    }
+
+    private static int size(Map<SyncTable, LinkedHashMap<String, Object[]>> batch) {
+        int size = 0;
+        for (Map<String, Object[]> changes : batch.values()) {
+            size += changes.size();
+        }
+        return size;
+    }
+
+    private static Set<String> upsertChanged(Connection conn, SyncTable table, Map<String, Object[]> changes) throws SQLException {
+        Set<String> ids = new LinkedHashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(table.upsertSql)) {
+            for (Map.Entry<String, Object[]> entry : changes.entrySet()) {
+                if (entry.getValue() == REMOVED) continue;
+                table.bind(conn, pstmt, entry.getValue());
+                pstmt.addBatch();
+                ids.add(entry.getKey());
+            }
+            if (!ids.isEmpty()) pstmt.executeBatch();
+        }
+        return ids;
+    }
+
+    private static Set<String> deleteRemoved(Connection conn, SyncTable table, Map<String, Object[]> changes) throws SQLException {
+        Set<String> ids = new LinkedHashSet<>();
+        for (Map.Entry<String, Object[]> entry : changes.entrySet()) {
+            if (entry.getValue() == REMOVED) ids.add(entry.getKey());
+        }
+        if (ids.isEmpty()) return ids;
+
+        String sql = "DELETE FROM " + table.table + " WHERE " + table.idColumn + " = ANY(?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("text", ids.toArray()));
+            pstmt.executeUpdate();
+        }
+        return ids;
+    }
+}
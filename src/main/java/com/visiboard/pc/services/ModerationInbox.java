@@ -0,0 +1,293 @@
+package com.visiboard.pc.services;
+
+import com.visiboard.pc.model.Report;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * All pending reports, kept ordered by {@link ReportPriority} in memory.
+ *
+ * The index is built once from the database and then maintained from live-sync deltas and
+ * local moderation actions. A new or changed report is one O(log n) re-insert; because a score
+ * depends on the number of reporters on the same target and on the reported user's sanctions,
+ * the other reports on that target (or against that user) are re-ranked with it. Nothing is
+ * ever re-sorted wholesale, and {@link #top(int)} reads the head of the index.
+ */
+public final class ModerationInbox {
+
+    private static final ModerationInbox INSTANCE = new ModerationInbox();
+
+    private static final class Entry {
+        final Report report;
+        final String target;
+        double score;
+
+        Entry(Report report, String target) {
+            this.report = report;
+            this.target = target;
+        }
+    }
+
+    private static final Comparator<Entry> BY_PRIORITY = Comparator
+            .comparingDouble((Entry e) -> -e.score)
+            .thenComparing(e -> e.report.getReportId());
+
+    private final TreeSet<Entry> ranked = new TreeSet<>(BY_PRIORITY);
+    private final Map<String, Entry> byId = new HashMap<>();
+    // target -> reporter_id -> reports by that reporter; the key count is the distinct reporter count
+    private final Map<String, Map<String, Integer>> reportersByTarget = new HashMap<>();
+    private final Map<String, Set<String>> idsByTarget = new HashMap<>();
+    private final Map<String, Set<String>> idsByUser = new HashMap<>();
+    private final Map<String, Integer> sanctionsByUser = new HashMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private boolean started;
+
+    private ModerationInbox() {
+    }
+
+    public static ModerationInbox getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Loads the index and starts following live-sync changes. Blocks on the database; call off the FX thread.
+     */
+    public void start() {
+        synchronized (this) {
+            if (started) return;
+            started = true;
+        }
+        SyncService.addChangeListener(this::onSyncChange);
+        reload();
+    }
+
+    /**
+     * Rebuilds the index from the database (e.g. on an explicit refresh). Call off the FX thread.
+     */
+    public void reload() {
+        List<Report> reports = pendingOnly(DatabaseService.getAllReports());
+        Set<String> userIds = reportedUsers(reports);
+        Map<String, Integer> sanctions = DatabaseService.getUserSanctionCounts(userIds);
+        synchronized (this) {
+            ranked.clear();
+            byId.clear();
+            reportersByTarget.clear();
+            idsByTarget.clear();
+            idsByUser.clear();
+            sanctionsByUser.clear();
+            for (String userId : userIds) {
+                sanctionsByUser.put(userId, sanctions.getOrDefault(userId, 0));
+            }
+            // Index first, score once: scoring while inserting would re-rank each target once per report
+            for (Report report : reports) {
+                index(report);
+            }
+            for (Entry entry : byId.values()) {
+                entry.score = scoreOf(entry);
+                ranked.add(entry);
+            }
+        }
+        fireChanged();
+    }
+
+    /**
+     * The {@code limit} most urgent reports, most urgent first.
+     */
+    public synchronized List<Report> top(int limit) {
+        List<Report> top = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (Entry entry : ranked) {
+            if (top.size() == limit) break;
+            top.add(entry.report);
+        }
+        return top;
+    }
+
+    public synchronized int size() {
+        return ranked.size();
+    }
+
+    /**
+     * Called (on a background thread) whenever the ranking may have changed.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Drops reports resolved locally, without waiting for the sync round-trip.
+     */
+    void removeReports(Collection<String> reportIds) {
+        if (reportIds.isEmpty()) return;
+        synchronized (this) {
+            Set<String> touchedTargets = new HashSet<>();
+            for (String reportId : reportIds) {
+                String target = remove(reportId);
+                if (target != null) touchedTargets.add(target);
+            }
+            for (String target : touchedTargets) {
+                rescore(idsByTarget.get(target));
+            }
+        }
+        fireChanged();
+    }
+
+    private void onSyncChange(String collection, Set<String> upsertedIds, Set<String> removedIds) {
+        if ("reports".equals(collection)) {
+            List<Report> fetched = DatabaseService.getReportsByIds(upsertedIds);
+            List<Report> fresh = pendingOnly(fetched);
+            Set<String> newUsers = new HashSet<>();
+            synchronized (this) {
+                for (String userId : reportedUsers(fresh)) {
+                    if (!sanctionsByUser.containsKey(userId)) newUsers.add(userId);
+                }
+            }
+            Map<String, Integer> sanctions = DatabaseService.getUserSanctionCounts(newUsers);
+
+            synchronized (this) {
+                for (String userId : newUsers) {
+                    sanctionsByUser.put(userId, sanctions.getOrDefault(userId, 0));
+                }
+                Set<String> touchedTargets = new HashSet<>();
+                for (String reportId : removedIds) {
+                    String target = remove(reportId);
+                    if (target != null) touchedTargets.add(target);
+                }
+                // A report that is no longer pending leaves the index like a removed one
+                for (Report report : fetched) {
+                    String previousTarget = remove(report.getReportId());
+                    if (previousTarget != null) touchedTargets.add(previousTarget);
+                }
+                for (Report report : fresh) {
+                    touchedTargets.add(index(report).target);
+                }
+                for (String target : touchedTargets) {
+                    rescore(idsByTarget.get(target));
+                }
+            }
+            fireChanged();
+        } else if ("users".equals(collection)) {
+            Set<String> watched = new HashSet<>();
+            synchronized (this) {
+                for (String userId : upsertedIds) {
+                    if (idsByUser.containsKey(userId)) watched.add(userId);
+                }
+            }
+            if (watched.isEmpty()) return;
+            Map<String, Integer> sanctions = DatabaseService.getUserSanctionCounts(watched);
+
+            boolean changed = false;
+            synchronized (this) {
+                for (String userId : watched) {
+                    int count = sanctions.getOrDefault(userId, 0);
+                    if (sanctionsByUser.getOrDefault(userId, 0) != count) {
+                        sanctionsByUser.put(userId, count);
+                        rescore(idsByUser.get(userId));
+                        changed = true;
+                    }
+                }
+            }
+            if (changed) fireChanged();
+        }
+    }
+
+    // Adds the report to the lookup maps (not to the ranking)
+    private Entry index(Report report) {
+        Entry entry = new Entry(report, targetOf(report));
+        byId.put(report.getReportId(), entry);
+        idsByTarget.computeIfAbsent(entry.target, k -> new HashSet<>()).add(report.getReportId());
+        if (report.getReportedUserId() != null) {
+            idsByUser.computeIfAbsent(report.getReportedUserId(), k -> new HashSet<>()).add(report.getReportId());
+        }
+        String reporter = report.getReporterId() != null ? report.getReporterId() : "";
+        reportersByTarget.computeIfAbsent(entry.target, k -> new HashMap<>()).merge(reporter, 1, Integer::sum);
+        return entry;
+    }
+
+    // Removes the report everywhere; returns its target, or null if it wasn't indexed
+    private String remove(String reportId) {
+        Entry entry = byId.remove(reportId);
+        if (entry == null) return null;
+        ranked.remove(entry);
+
+        Set<String> targetIds = idsByTarget.get(entry.target);
+        targetIds.remove(reportId);
+        if (targetIds.isEmpty()) idsByTarget.remove(entry.target);
+
+        String userId = entry.report.getReportedUserId();
+        if (userId != null) {
+            Set<String> userIds = idsByUser.get(userId);
+            userIds.remove(reportId);
+            if (userIds.isEmpty()) idsByUser.remove(userId);
+        }
+
+        Map<String, Integer> reporters = reportersByTarget.get(entry.target);
+        String reporter = entry.report.getReporterId() != null ? entry.report.getReporterId() : "";
+        if (reporters.merge(reporter, -1, Integer::sum) == 0) reporters.remove(reporter);
+        if (reporters.isEmpty()) reportersByTarget.remove(entry.target);
+        return entry.target;
+    }
+
+    // Re-ranks the given reports; entries not yet in the ranking are simply added
+    private void rescore(Set<String> reportIds) {
+        if (reportIds == null) return;
+        for (String reportId : reportIds) {
+            Entry entry = byId.get(reportId);
+            ranked.remove(entry);
+            entry.score = scoreOf(entry);
+            ranked.add(entry);
+        }
+    }
+
+    private double scoreOf(Entry entry) {
+        Map<String, Integer> reporters = reportersByTarget.get(entry.target);
+        String userId = entry.report.getReportedUserId();
+        int sanctions = userId == null ? 0 : sanctionsByUser.getOrDefault(userId, 0);
+        return ReportPriority.score(entry.report.getCategory(), reporters == null ? 1 : reporters.size(), sanctions,
+                                    entry.report.getTimestamp());
+    }
+
+    private static String targetOf(Report report) {
+        String noteId = report.getReportedNoteId();
+        return noteId != null && !noteId.isEmpty() ? "note:" + noteId : "user:" + report.getReportedUserId();
+    }
+
+    // Reports reviewed elsewhere (e.g. resolved from the mobile app) stay in the table with another status
+    private static List<Report> pendingOnly(List<Report> reports) {
+        List<Report> pending = new ArrayList<>(reports.size());
+        for (Report report : reports) {
+            if ("PENDING".equals(report.getStatus())) pending.add(report);
+        }
+        return pending;
+    }
+
+    private static Set<String> reportedUsers(Collection<Report> reports) {
+        Set<String> userIds = new HashSet<>();
+        for (Report report : reports) {
+            if (report.getReportedUserId() != null) userIds.add(report.getReportedUserId());
+        }
+        return userIds;
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
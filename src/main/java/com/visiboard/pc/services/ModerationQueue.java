@@ -0,0 +1,119 @@
+package com.visiboard.pc.services;
+
+import com.visiboard.pc.model.Report;
+import com.visiboard.pc.util.ConcurrencyManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs bulk moderation jobs (one action on many reports) in the background.
+ *
+ * A job is split into batches of 100 reports (-Dvisiboard.moderation.batchSize); each batch
+ * is one {@link ModerationService#applyAll} transaction, and its Firebase writes reach Firestore
+ * through the outbox in batched commits. Batches of a job run in order on one worker,
+ * so two batches never contend for the same user rows; separate jobs run on a small bounded pool
+ * and a full queue rejects new jobs instead of piling them up. If a batch fails, its reports are
+ * retried one at a time so a single bad report does not sink the other ninety-nine.
+ *
+ * The pool is registered with {@link ConcurrencyManager}: on exit queued jobs get the usual grace
+ * period to run, and any that never started are logged.
+ */
+public final class ModerationQueue {
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        /** Called off the FX thread after each batch. */
+        void onProgress(int processed, int failed, int total);
+    }
+
+    public static final class Result {
+        private final int processed;
+        private final List<Report> failed;
+
+        Result(int processed, List<Report> failed) {
+            this.processed = processed;
+            this.failed = failed;
+        }
+
+        public int getProcessed() {
+            return processed;
+        }
+
+        public List<Report> getFailed() {
+            return failed;
+        }
+    }
+
+    private static final int BATCH_SIZE = Integer.getInteger("visiboard.moderation.batchSize", 100);
+    private static final int WORKERS = Integer.getInteger("visiboard.moderation.workers", 2);
+    private static final int MAX_QUEUED_JOBS = 16;
+
+    private static final ThreadPoolExecutor executor = ConcurrencyManager.register("moderation", new ThreadPoolExecutor(
+            WORKERS, WORKERS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_JOBS),
+            ConcurrencyManager.threadFactory("VisiBoard-Moderation")));
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private ModerationQueue() {
+    }
+
+    /**
+     * Queues {@code action} for all {@code reports}. The future completes when every batch has
+     * run, or exceptionally with {@link RejectedExecutionException} if the queue is full.
+     */
+    public static CompletableFuture<Result> submit(ModerationService.Action action, List<Report> reports, long expiry,
+                                                   ProgressListener listener) {
+        List<Report> jobReports = new ArrayList<>(reports);
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(run(action, jobReports, expiry, listener));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static Result run(ModerationService.Action action, List<Report> reports, long expiry, ProgressListener listener) {
+        long start = System.currentTimeMillis();
+        int total = reports.size();
+        int processed = 0;
+        List<Report> failed = new ArrayList<>();
+
+        for (int from = 0; from < total; from += BATCH_SIZE) {
+            List<Report> batch = reports.subList(from, Math.min(from + BATCH_SIZE, total));
+            if (ModerationService.applyAll(action, batch, expiry)) {
+                processed += batch.size();
+            } else {
+                for (Report report : batch) {
+                    if (ModerationService.apply(action, report, expiry)) {
+                        processed++;
+                    } else {
+                        failed.add(report);
+                    }
+                }
+            }
+            if (listener != null) {
+                listener.onProgress(processed, failed.size(), total);
+            }
+        }
+
+        System.out.println("[Moderation] " + action + " job: " + processed + " of " + total + " reports in " +
+                           (System.currentTimeMillis() - start) + " ms" + (failed.isEmpty() ? "." : ", " + failed.size() + " failed."));
+        return new Result(processed, Collections.unmodifiableList(failed));
+    }
+}
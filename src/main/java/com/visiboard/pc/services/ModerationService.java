@@ -0,0 +1,275 @@
+package com.visiboard.pc.services;
+
+import com.visiboard.pc.model.Report;
+import com.visiboard.pc.model.ReportGroup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Moderation actions on reports, each run as one transaction on one connection.
+ *
+ * An action touches several tables: the reported user's status, the report itself, possibly
+ * the reported note, and a notification to each party, plus the outbox rows that mirror all of
+ * it to Firebase. Instead of one autocommitted call per step, every table gets one statement
+ * (a set-based UPDATE/DELETE or a batched INSERT), so acting on one report or on a hundred
+ * costs the same handful of round-trips, and either all of it happens or none of it does.
+ */
+public final class ModerationService {
+
+    public enum Action {
+        DISMISS(null, false,
+                null,
+                "Your report has been reviewed and dismissed. No violation found."),
+        WARN(null, false,
+                "You have received a warning for violating community guidelines.",
+                "We have reviewed your report and warned the user."),
+        RESTRICT("restricted", false,
+                "Your account has been restricted %s.",
+                "Update: The user you reported has been restricted."),
+        BAN("banned", false,
+                "Your account has been banned %s.",
+                "Update: The user you reported has been banned."),
+        DELETE_NOTE(null, true,
+                "Your note was removed for violating guidelines.",
+                "Update: The content you reported has been removed.");
+
+        // Status to set on the reported user ("banned"/"restricted"), or null to leave the account alone
+        final String statusField;
+        final boolean deletesNote;
+        // Message to the reported user (%s is the duration), or null for none
+        final String reportedMessage;
+        final String reporterMessage;
+
+        Action(String statusField, boolean deletesNote, String reportedMessage, String reporterMessage) {
+            this.statusField = statusField;
+            this.deletesNote = deletesNote;
+            this.reportedMessage = reportedMessage;
+            this.reporterMessage = reporterMessage;
+        }
+
+        /** True if the action needs an expiry (see {@link #apply(Action, Report, long)}). */
+        public boolean needsExpiry() {
+            return statusField != null;
+        }
+    }
+
+    private static final String NOTIFICATION_TYPE = "admin";
+
+    // Resolve every pending report in a group; '' note ids count as user reports
+    static final String RESOLVE_NOTE_GROUP_SQL =
+            "DELETE FROM reports WHERE status = 'PENDING' AND reported_note_id = ? RETURNING report_id, reporter_id";
+    static final String RESOLVE_USER_GROUP_SQL =
+            "DELETE FROM reports WHERE status = 'PENDING' AND (reported_note_id IS NULL OR reported_note_id = '') " +
+            "AND reported_user_id = ? RETURNING report_id, reporter_id";
+
+    private ModerationService() {
+    }
+
+    /**
+     * Applies {@code action} to one report. {@code expiry} is the epoch-millis end of a restriction
+     * or ban (0 for permanent) and is ignored by the other actions. Returns false if nothing was
+     * changed because the transaction failed.
+     */
+    public static boolean apply(Action action, Report report, long expiry) {
+        return applyAll(action, Collections.singletonList(report), expiry);
+    }
+
+    /**
+     * Applies {@code action} to all {@code reports} in a single transaction. A user reported
+     * several times is updated and notified once; each reporter is notified once per distinct
+     * message. {@link Action#DELETE_NOTE} skips reports that do not point at a note (user reports
+     * have a null or empty note id) and leaves them pending.
+     */
+    public static boolean applyAll(Action action, List<Report> reports, long expiry) {
+        if (reports.isEmpty()) return true;
+
+        Set<String> reportIds = new LinkedHashSet<>();
+        Set<String> noteIds = new LinkedHashSet<>();
+        Set<String> reportedUserIds = new LinkedHashSet<>();
+        // user_id + message -> (user_id, message); keeps the first of any duplicates
+        Map<String, String[]> notifications = new LinkedHashMap<>();
+
+        String reportedMessage = action.reportedMessage == null ? null : String.format(action.reportedMessage, describeExpiry(expiry));
+        int skipped = 0;
+        for (Report report : reports) {
+            String noteId = report.getReportedNoteId();
+            boolean hasNote = noteId != null && !noteId.isEmpty();
+            if (action.deletesNote && !hasNote) {
+                // Nothing to remove, and "your note was removed" would be false
+                skipped++;
+                continue;
+            }
+            reportIds.add(report.getReportId());
+            if (action.deletesNote) {
+                noteIds.add(noteId);
+            }
+            if (report.getReportedUserId() != null) {
+                reportedUserIds.add(report.getReportedUserId());
+                if (reportedMessage != null) {
+                    addNotification(notifications, report.getReportedUserId(), reportedMessage);
+                }
+            }
+            if (report.getReporterId() != null) {
+                addNotification(notifications, report.getReporterId(), action.reporterMessage);
+            }
+        }
+
+        if (skipped > 0) {
+            System.err.println("[Moderation] " + action + " skipped " + skipped + " report(s) without a reported note.");
+        }
+        if (reportIds.isEmpty()) return true;
+
+        try {
+            DatabaseService.inTransaction(conn -> {
+                try (FirestoreOutbox.Batch outbox = FirestoreOutbox.batch(conn)) {
+                    if (action.statusField != null && !reportedUserIds.isEmpty()) {
+                        updateStatus(conn, outbox, action.statusField, reportedUserIds, expiry);
+                    }
+                    // Reports first: they may point at the notes being deleted
+                    deleteByIds(conn, "reports", "report_id", reportIds);
+                    for (String reportId : reportIds) {
+                        outbox.delete("reports", reportId);
+                    }
+                    if (!noteIds.isEmpty()) {
+                        deleteByIds(conn, "notes", "note_id", noteIds);
+                        for (String noteId : noteIds) {
+                            outbox.delete("notes", noteId);
+                        }
+                    }
+                    insertNotifications(conn, outbox, notifications.values());
+                    outbox.execute();
+                }
+            });
+            ModerationInbox.getInstance().removeReports(reportIds);
+            System.out.println("[Moderation] " + action + " applied to " + reportIds.size() + " report(s).");
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("[Moderation] " + action + " failed for " + reportIds.size() + " report(s): " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Applies {@code action} to every pending report against the group's target. All member
+     * reports are resolved by one DELETE (including any filed since the group was loaded); the
+     * reported user is updated and notified once, and each distinct reporter gets one notice.
+     */
+    public static boolean applyToGroup(Action action, ReportGroup group, long expiry) {
+        String reportedUserId = group.getReportedUserId();
+        String reportedMessage = action.reportedMessage == null ? null : String.format(action.reportedMessage, describeExpiry(expiry));
+        List<String> resolved = new ArrayList<>();
+
+        try {
+            DatabaseService.inTransaction(conn -> {
+                try (FirestoreOutbox.Batch outbox = FirestoreOutbox.batch(conn)) {
+                    Map<String, String[]> notifications = new LinkedHashMap<>();
+                    if (reportedUserId != null) {
+                        if (action.statusField != null) {
+                            updateStatus(conn, outbox, action.statusField, Collections.singleton(reportedUserId), expiry);
+                        }
+                        if (reportedMessage != null) {
+                            addNotification(notifications, reportedUserId, reportedMessage);
+                        }
+                    }
+
+                    try (PreparedStatement pstmt = conn.prepareStatement(group.isNoteTarget() ? RESOLVE_NOTE_GROUP_SQL : RESOLVE_USER_GROUP_SQL)) {
+                        pstmt.setString(1, group.getTargetId());
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                resolved.add(rs.getString(1));
+                                outbox.delete("reports", rs.getString(1));
+                                if (rs.getString(2) != null) {
+                                    addNotification(notifications, rs.getString(2), action.reporterMessage);
+                                }
+                            }
+                        }
+                    }
+
+                    if (action.deletesNote && group.isNoteTarget()) {
+                        deleteByIds(conn, "notes", "note_id", Collections.singleton(group.getTargetId()));
+                        outbox.delete("notes", group.getTargetId());
+                    }
+                    insertNotifications(conn, outbox, notifications.values());
+                    outbox.execute();
+                }
+            });
+            ModerationInbox.getInstance().removeReports(resolved);
+            System.out.println("[Moderation] " + action + " applied to " + group.getTargetType() + " " + group.getTargetId() +
+                               " (" + resolved.size() + " report(s)).");
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("[Moderation] " + action + " failed for " + group.getTargetType() + " " + group.getTargetId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    static String describeExpiry(long expiry) {
+        return expiry == 0 ? "permanently" : "until " + new Date(expiry).toString();
+    }
+
+    private static void addNotification(Map<String, String[]> notifications, String userId, String message) {
+        notifications.putIfAbsent(userId + '\n' + message, new String[] {userId, message});
+    }
+
+    private static void updateStatus(Connection conn, FirestoreOutbox.Batch outbox, String statusField,
+                                     Set<String> userIds, long expiry) throws SQLException {
+        String sql = "banned".equals(statusField)
+                ? "UPDATE users SET is_banned = TRUE, ban_expiry = ? WHERE user_id = ANY(?)"
+                : "UPDATE users SET is_restricted = TRUE, restriction_expiry = ? WHERE user_id = ANY(?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, expiry);
+            pstmt.setArray(2, conn.createArrayOf("varchar", userIds.toArray()));
+            pstmt.executeUpdate();
+        }
+        Map<String, Object> fields = DatabaseService.userStatusFields(statusField, true, expiry);
+        for (String userId : userIds) {
+            outbox.update("users", userId, fields);
+        }
+    }
+
+    private static void deleteByIds(Connection conn, String table, String idColumn, Set<String> ids) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM " + table + " WHERE " + idColumn + " = ANY(?)")) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", ids.toArray()));
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void insertNotifications(Connection conn, FirestoreOutbox.Batch outbox,
+                                            Iterable<String[]> notifications) throws SQLException {
+        String sql = "INSERT INTO notifications (notification_id, user_id, message, type, is_read, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+        long timestamp = System.currentTimeMillis();
+        int count = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (String[] notification : notifications) {
+                String notifId = UUID.randomUUID().toString();
+                pstmt.setString(1, notifId);
+                pstmt.setString(2, notification[0]);
+                pstmt.setString(3, notification[1]);
+                pstmt.setString(4, NOTIFICATION_TYPE);
+                pstmt.setBoolean(5, false);
+                pstmt.setLong(6, timestamp);
+                pstmt.addBatch();
+                outbox.set("notifications", notifId,
+                        DatabaseService.notificationDocument(notification[0], notification[1], NOTIFICATION_TYPE, timestamp));
+                count++;
+            }
+            if (count > 0) {
+                pstmt.executeBatch();
+            }
+        }
+    }
+}
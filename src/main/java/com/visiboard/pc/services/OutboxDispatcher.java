@@ -0,0 +1,184 @@
+package com.visiboard.pc.services;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.visiboard.pc.util.ConcurrencyManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends queued {@code firestore_outbox} writes to Firestore in the background.
+ *
+ * Due rows are claimed in batches and committed as one Firestore WriteBatch. If the batch is
+ * rejected the rows are retried one by one, so a single bad write (e.g. an update to a user
+ * that no longer exists in Firestore) cannot hold back the rest. A failed row is retried with
+ * exponential backoff while later writes to the same document wait behind it. A row Firestore
+ * rejects outright (NOT_FOUND, INVALID_ARGUMENT), that the SDK cannot even build (e.g. an empty
+ * document id), or that runs out of attempts is dead-lettered: it stays in the table with its
+ * error but is no longer sent or waited on. Callers {@link #wakeUp()} the dispatcher after
+ * committing; a slow poll also catches retries and rows left behind by an earlier run.
+ */
+public final class OutboxDispatcher {
+
+    // Rows per Firestore commit (-Dvisiboard.outbox.batchSize); a WriteBatch holds at most 500
+    private static final int BATCH_SIZE = Math.min(Integer.getInteger("visiboard.outbox.batchSize", 100), FirestoreBatch.MAX_WRITES);
+    private static final long POLL_INTERVAL_MS = Long.getLong("visiboard.outbox.pollMs", 5_000L);
+    // A claimed row is not handed out again for this long, in case this process dies mid-send
+    private static final long LEASE_MS = 60_000L;
+    private static final long INITIAL_BACKOFF_MS = 1_000L;
+    private static final long MAX_BACKOFF_MS = 15 * 60_000L;
+    // Sends per row before it is dead-lettered (-Dvisiboard.outbox.maxAttempts); ~2h at the backoff cap
+    private static final int MAX_ATTEMPTS = Integer.getInteger("visiboard.outbox.maxAttempts", 16);
+
+    private static ScheduledExecutorService executor;
+    private static final AtomicBoolean drainQueued = new AtomicBoolean();
+
+    private OutboxDispatcher() {
+    }
+
+    public static synchronized void start() {
+        if (executor != null) return;
+        executor = ConcurrencyManager.register("outbox",
+                new ScheduledThreadPoolExecutor(1, ConcurrencyManager.threadFactory("VisiBoard-Outbox")));
+        executor.scheduleWithFixedDelay(OutboxDispatcher::drain, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        System.out.println("[Outbox] Dispatcher started.");
+    }
+
+    /**
+     * Stops polling after one last attempt to send what is queued. Anything still pending is
+     * sent on the next start.
+     */
+    public static synchronized void stop() {
+        if (executor == null) return;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        drain();
+        System.out.println("[Outbox] Dispatcher stopped.");
+    }
+
+    /**
+     * Sends newly committed rows now instead of at the next poll.
+     */
+    public static synchronized void wakeUp() {
+        if (executor == null || !drainQueued.compareAndSet(false, true)) return;
+        executor.execute(() -> {
+            drainQueued.set(false);
+            drain();
+        });
+    }
+
+    // Runs on the single dispatcher thread (or on the caller in stop(), after it has finished)
+    private static void drain() {
+        try {
+            while (true) {
+                List<FirestoreOutbox.Entry> entries;
+                try (Connection conn = DatabaseService.getConnection()) {
+                    entries = FirestoreOutbox.claim(conn, BATCH_SIZE, LEASE_MS);
+                }
+                if (entries.isEmpty()) return;
+
+                boolean allSent = dispatch(entries);
+                if (!allSent || entries.size() < BATCH_SIZE) return;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("[Outbox] Failed to read the outbox: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Keep the scheduled poll alive
+            e.printStackTrace();
+            System.err.println("[Outbox] Dispatch failed: " + e.getMessage());
+        }
+    }
+
+    private static boolean dispatch(List<FirestoreOutbox.Entry> entries) throws SQLException {
+        try {
+            FirestoreBatch batch = FirebaseService.batch();
+            for (FirestoreOutbox.Entry entry : entries) {
+                entry.addTo(batch);
+            }
+            batch.commit().get();
+            try (Connection conn = DatabaseService.getConnection()) {
+                FirestoreOutbox.complete(conn, entries);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false; // rows come back when the lease expires
+        } catch (ExecutionException | RuntimeException e) {
+            // RuntimeException: a row the SDK refuses to even build (e.g. an invalid document path)
+            System.err.println("[Outbox] Batch of " + entries.size() + " rejected, retrying individually: " + rootMessage(e));
+            return dispatchIndividually(entries);
+        }
+    }
+
+    private static boolean dispatchIndividually(List<FirestoreOutbox.Entry> entries) throws SQLException {
+        boolean allSent = true;
+        try (Connection conn = DatabaseService.getConnection()) {
+            for (FirestoreOutbox.Entry entry : entries) {
+                try {
+                    FirestoreBatch single = FirebaseService.batch();
+                    entry.addTo(single);
+                    single.commit().get();
+                    FirestoreOutbox.complete(conn, List.of(entry));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                } catch (RuntimeException e) {
+                    // Rejected before it was sent: the row itself is malformed and never will be
+                    allSent = false;
+                    deadLetter(conn, entry, e);
+                } catch (ExecutionException e) {
+                    allSent = false;
+                    if (isPermanent(e) || entry.attempts + 1 >= MAX_ATTEMPTS) {
+                        deadLetter(conn, entry, e);
+                    } else {
+                        FirestoreOutbox.retryLater(conn, entry, System.currentTimeMillis() + backoff(entry.attempts), rootMessage(e));
+                        System.err.println("[Outbox] " + entry.operation + " " + entry.documentPath() +
+                                           " failed (attempt " + (entry.attempts + 1) + "): " + rootMessage(e));
+                    }
+                }
+            }
+        }
+        return allSent;
+    }
+
+    private static void deadLetter(Connection conn, FirestoreOutbox.Entry entry, Exception error) throws SQLException {
+        FirestoreOutbox.deadLetter(conn, entry, rootMessage(error));
+        System.err.println("[Outbox] " + entry.operation + " " + entry.documentPath() +
+                           " dead-lettered after " + (entry.attempts + 1) + " attempt(s): " + rootMessage(error));
+    }
+
+    private static long backoff(int attempts) {
+        return Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempts, 20));
+    }
+
+    // Errors a retry cannot fix: the target document is gone or the write itself is malformed
+    private static boolean isPermanent(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof ApiException) {
+                StatusCode.Code code = ((ApiException) t).getStatusCode().getCode();
+                return code == StatusCode.Code.NOT_FOUND || code == StatusCode.Code.INVALID_ARGUMENT;
+            }
+        }
+        return false;
+    }
+
+    private static String rootMessage(Throwable t) {
+        while (t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t.getMessage();
+    }
+}
@@ -0,0 +1,182 @@
+package com.visiboard.pc.services;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Streams decoded sync rows into a {@code COPY ... FROM STDIN (FORMAT binary)} operation.
+ *
+ * Rows use the same layout and {@link Types} codes as {@link SyncTable#bind}; values are
+ * encoded in PostgreSQL's binary wire format and sent to the server in ~64 KB chunks.
+ */
+final class PgBinaryCopyWriter implements AutoCloseable {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    // PostgreSQL timestamps count microseconds from 2000-01-01 00:00
+    private static final long PG_EPOCH_MICROS = 946_684_800L * 1_000_000L;
+    private static final int TEXT_OID = 25;
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    private final CopyIn copyIn;
+    private final int[] columnTypes;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(FLUSH_BYTES * 2);
+    private final DataOutputStream out = new DataOutputStream(buffer);
+
+    PgBinaryCopyWriter(Connection conn, String copySql, int[] columnTypes) throws SQLException {
+        this.copyIn = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql);
+        this.columnTypes = columnTypes;
+        try {
+            out.write(SIGNATURE);
+            out.writeInt(0); // flags
+            out.writeInt(0); // header extension length
+        } catch (IOException e) {
+            throw new SQLException("Failed to start binary COPY", e);
+        }
+    }
+
+    void writeRow(Object[] row) throws SQLException {
+        try {
+            out.writeShort(row.length);
+            for (int i = 0; i < row.length; i++) {
+                writeValue(row[i], columnTypes[i]);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to encode row for COPY", e);
+        }
+        if (buffer.size() >= FLUSH_BYTES) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Sends the trailer and completes the COPY. Returns the number of rows the server accepted.
+     */
+    long finish() throws SQLException {
+        try {
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new SQLException("Failed to finish binary COPY", e);
+        }
+        flushBuffer();
+        return copyIn.endCopy();
+    }
+
+    /**
+     * Abandons the COPY; the server discards everything sent so far. Does nothing once the COPY
+     * has finished or been cancelled.
+     */
+    void cancel() throws SQLException {
+        if (copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        // Left without finish() (error path)
+        cancel();
+    }
+
+    private void flushBuffer() throws SQLException {
+        if (buffer.size() == 0) return;
+        copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+        buffer.reset();
+    }
+
+    private void writeValue(Object value, int type) throws IOException, SQLException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        switch (type) {
+            case Types.VARCHAR:
+                writeBytes(value.toString().getBytes(StandardCharsets.UTF_8));
+                break;
+            case Types.INTEGER:
+                out.writeInt(4);
+                out.writeInt(((Number) value).intValue());
+                break;
+            case Types.BIGINT:
+                out.writeInt(8);
+                out.writeLong(((Number) value).longValue());
+                break;
+            case Types.DOUBLE:
+                out.writeInt(8);
+                out.writeDouble(((Number) value).doubleValue());
+                break;
+            case Types.BOOLEAN:
+                out.writeInt(1);
+                out.writeByte((Boolean) value ? 1 : 0);
+                break;
+            case Types.TIMESTAMP:
+                out.writeInt(8);
+                out.writeLong(toPgMicros((Timestamp) value));
+                break;
+            case Types.ARRAY:
+                writeTextArray((Object[]) value);
+                break;
+            default:
+                throw new SQLException("Unsupported column type for binary COPY: " + type);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // One-dimensional text[]: ndim, has-null flag, element OID, then (length, lower bound) and the elements
+    private void writeTextArray(Object[] values) throws IOException {
+        if (values.length == 0) {
+            out.writeInt(12);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(TEXT_OID);
+            return;
+        }
+
+        byte[][] elements = new byte[values.length][];
+        int size = 20;
+        boolean hasNull = false;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                hasNull = true;
+                size += 4;
+            } else {
+                elements[i] = values[i].toString().getBytes(StandardCharsets.UTF_8);
+                size += 4 + elements[i].length;
+            }
+        }
+
+        out.writeInt(size);
+        out.writeInt(1);
+        out.writeInt(hasNull ? 1 : 0);
+        out.writeInt(TEXT_OID);
+        out.writeInt(values.length);
+        out.writeInt(1);
+        for (byte[] element : elements) {
+            if (element == null) {
+                out.writeInt(-1);
+            } else {
+                writeBytes(element);
+            }
+        }
+    }
+
+    // TIMESTAMP (without time zone) holds local wall-clock time, the same as PgJDBC's setTimestamp
+    private static long toPgMicros(Timestamp ts) {
+        LocalDateTime local = ts.toLocalDateTime();
+        return local.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + local.getNano() / 1_000L - PG_EPOCH_MICROS;
+    }
+}
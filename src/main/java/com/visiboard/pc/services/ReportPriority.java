@@ -0,0 +1,43 @@
+package com.visiboard.pc.services;
+
+import java.util.Map;
+
+/**
+ * Priority score of a pending report; higher is more urgent.
+ *
+ * The score multiplies a category weight, a reporter factor (how many distinct users reported
+ * the same target) and a repeat-offender factor (sanctions already on the reported user's
+ * account), and halves that every {@code visiboard.inbox.halfLifeHours} (default 24) of age.
+ * It is kept in log form, {@code ln(weight) + ln 2 * timestamp / halfLife}: the decay then
+ * shifts every report by the same amount as time passes, so the ranking never changes on its
+ * own and a score only has to be recomputed when one of its inputs does.
+ */
+final class ReportPriority {
+
+    private static final double HALF_LIFE_MILLIS = Double.parseDouble(System.getProperty("visiboard.inbox.halfLifeHours", "24")) * 3_600_000d;
+
+    private static final Map<String, Double> CATEGORY_WEIGHTS = Map.of(
+            "VIOLENCE", 5.0,
+            "NUDITY", 4.0,
+            "HATE_SPEECH", 4.0,
+            "HARASSMENT", 3.0,
+            "MISINFORMATION", 2.0,
+            "SPAM", 1.0);
+    private static final double DEFAULT_CATEGORY_WEIGHT = 1.0;
+    private static final double PER_SANCTION = 0.5;
+
+    private ReportPriority() {
+    }
+
+    static double score(String category, int reporters, int priorSanctions, long timestamp) {
+        double weight = categoryWeight(category)
+                * (1 + Math.log(Math.max(1, reporters)))
+                * (1 + PER_SANCTION * priorSanctions);
+        return Math.log(weight) + Math.log(2) * timestamp / HALF_LIFE_MILLIS;
+    }
+
+    private static double categoryWeight(String category) {
+        if (category == null) return DEFAULT_CATEGORY_WEIGHT;
+        return CATEGORY_WEIGHTS.getOrDefault(category.trim().toUpperCase().replace(' ', '_'), DEFAULT_CATEGORY_WEIGHT);
+    }
+}
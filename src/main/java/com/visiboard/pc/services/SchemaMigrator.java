@@ -0,0 +1,191 @@
+package com.visiboard.pc.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned, forward-only schema migrations.
+ *
+ * Scripts live in {@code com/visiboard/pc/db/migration} as {@code V<n>__<description>.sql}
+ * and are listed in {@link #MIGRATIONS} in the order they must run. Each pending script is
+ * applied in its own transaction together with its {@code schema_version} row, so a failed
+ * migration leaves the database at the previous version. Applied scripts must never be edited;
+ * add a new one instead.
+ */
+public final class SchemaMigrator {
+
+    private static final String MIGRATION_PATH = "/com/visiboard/pc/db/migration/";
+
+    private static final String[] MIGRATIONS = {
+            "V1__baseline.sql",
+            "V2__reconcile_schema_sql.sql",
+            "V3__read_path_indexes.sql",
+            "V4__keyset_paging_indexes.sql",
+            "V5__daily_stats_rollup.sql",
+            "V6__firestore_outbox.sql",
+            "V7__outbox_dead_letter.sql",
+            "V8__pending_report_group_indexes.sql",
+    };
+
+    // Arbitrary key for pg_advisory_xact_lock, so two app instances don't migrate at once
+    private static final long MIGRATION_LOCK_KEY = 0x56697369426F6172L;
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Brings the schema on {@code conn}'s search_path up to the latest version.
+     * Returns the number of migrations applied.
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            lock(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                             "version INT PRIMARY KEY, " +
+                             "description VARCHAR(255) NOT NULL, " +
+                             "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                             ")");
+            }
+            conn.commit();
+
+            int applied = 0;
+            for (String script : MIGRATIONS) {
+                int version = versionOf(script);
+                lock(conn);
+                if (isApplied(conn, version)) {
+                    conn.commit();
+                    continue;
+                }
+                try {
+                    apply(conn, script, version);
+                    conn.commit();
+                    applied++;
+                    System.out.println("[Migration] Applied " + script);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + script + " failed: " + e.getMessage(), e);
+                }
+            }
+            return applied;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Latest version known to this build.
+     */
+    public static int latestVersion() {
+        return versionOf(MIGRATIONS[MIGRATIONS.length - 1]);
+    }
+
+    private static void lock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT pg_advisory_xact_lock(?)")) {
+            pstmt.setLong(1, MIGRATION_LOCK_KEY);
+            pstmt.execute();
+        }
+    }
+
+    private static boolean isApplied(Connection conn, int version) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM schema_version WHERE version = ?")) {
+            pstmt.setInt(1, version);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void apply(Connection conn, String script, int version) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : splitStatements(readScript(script))) {
+                stmt.execute(sql);
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            pstmt.setInt(1, version);
+            pstmt.setString(2, script.substring(script.indexOf("__") + 2, script.length() - ".sql".length()).replace('_', ' '));
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static int versionOf(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    static String readScript(String script) throws SQLException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(MIGRATION_PATH + script)) {
+            if (in == null) {
+                throw new SQLException("Migration script not found on classpath: " + script);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read migration " + script, e);
+        }
+    }
+
+    /**
+     * Splits a script on semicolons outside quotes and $$-bodies. A "--" comment outside them runs
+     * to the end of its line and is dropped, whether it starts the line or trails SQL, so a ';'
+     * or an apostrophe in a comment cannot end or unbalance a statement. Comments inside $$-bodies
+     * are left for PostgreSQL.
+     */
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuote = false;
+        boolean inDollar = false;
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            char next = i + 1 < script.length() ? script.charAt(i + 1) : 0;
+            if (!inQuote && !inDollar && c == '-' && next == '-') {
+                while (i + 1 < script.length() && script.charAt(i + 1) != '\n' && script.charAt(i + 1) != '\r') {
+                    i++;
+                }
+                continue;
+            }
+            if (!inQuote && c == '$' && next == '$') {
+                inDollar = !inDollar;
+                current.append("$$");
+                i++;
+                continue;
+            }
+            if (!inDollar && c == '\'') {
+                // An escaped quote ('') toggles twice and stays inside the literal
+                inQuote = !inQuote;
+            }
+            if (c == ';' && !inQuote && !inDollar) {
+                addStatement(statements, current);
+            } else {
+                current.append(c);
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    /**
+     * Bundled migration scripts, in the order they run.
+     */
+    static List<String> scripts() {
+        return List.of(MIGRATIONS);
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String sql = current.toString().trim();
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+        current.setLength(0);
+    }
+}
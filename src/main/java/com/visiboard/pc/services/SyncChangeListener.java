@@ -0,0 +1,12 @@
+package com.visiboard.pc.services;
+
+import java.util.Set;
+
+/**
+ * Receives the document ids touched by each live-sync flush, after they are committed to PostgreSQL.
+ * Called on the live-sync thread; UI listeners must hop to the FX thread themselves.
+ */
+@FunctionalInterface
+public interface SyncChangeListener {
+    void onChange(String collection, Set<String> upsertedIds, Set<String> removedIds);
+}
@@ -0,0 +1,487 @@
+package com.visiboard.pc.services;
+
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.visiboard.pc.util.ConcurrencyManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One sync run over a set of collections.
+ *
+ * Every collection gets a fetcher (Firestore page read + decode) and a writer (JDBC batch
+ * upsert) connected by a small bounded queue, so page N+1 is fetched and decoded while
+ * page N is being written. All collections are fetched concurrently; the users-before-notes
+ * foreign key ordering is only enforced when a writer starts writing.
+ *
+ * Small or incremental reads are upserted page by page. Large first-time or full reads are
+ * streamed with binary COPY into an unlogged staging table and merged in one statement. A
+ * complete full read also deletes local rows whose document no longer exists.
+ */
+final class SyncPipeline {
+
+    // Documents fetched per Firestore page and rows per JDBC executeBatch (-Dvisiboard.sync.pageSize / batchSize)
+    static final int PAGE_SIZE = Integer.getInteger("visiboard.sync.pageSize", 500);
+    static final int BATCH_SIZE = Integer.getInteger("visiboard.sync.batchSize", 100);
+    // Decoded pages buffered between fetcher and writer
+    private static final int PIPELINE_DEPTH = Integer.getInteger("visiboard.sync.pipelineDepth", 2);
+    // First-time/full reads at least this large use COPY + merge instead of upserts (-Dvisiboard.sync.bulkThreshold, <0 disables)
+    private static final long BULK_THRESHOLD = Long.getLong("visiboard.sync.bulkThreshold", 5000L);
+    // Ids sent per statement when reconciling deletions
+    private static final int ID_CHUNK = 10_000;
+
+    private final boolean fullResync;
+    private final Map<SyncTable, CompletableFuture<Void>> written = new HashMap<>();
+    private final List<StageTimings> timings = new ArrayList<>();
+
+    SyncPipeline(boolean fullResync) {
+        this.fullResync = fullResync;
+    }
+
+    /**
+     * Runs the pipeline and blocks until every collection has been written (or failed).
+     * Tables must be listed after the tables they are written after.
+     */
+    void run(List<SyncTable> tables) {
+        long start = System.nanoTime();
+        // Fetchers and writers block on Firestore, JDBC and the page queue: I/O work
+        ExecutorService executor = ConcurrencyManager.io();
+
+        for (SyncTable table : tables) {
+            CompletableFuture<Void> prerequisite = table.writeAfter != null
+                    ? written.getOrDefault(table.writeAfter, CompletableFuture.completedFuture(null))
+                    : CompletableFuture.completedFuture(null);
+            written.put(table, start(table, prerequisite, executor));
+        }
+        try {
+            CompletableFuture.allOf(written.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            // Writers log their own failures; one failed table must not stop the caller (e.g. live sync)
+            System.err.println("[Sync] Sync run finished with errors: " + e.getMessage());
+        }
+
+        for (StageTimings t : timings) {
+            System.out.println("[Sync] " + t);
+        }
+        System.out.println("[Sync] Wall clock: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private CompletableFuture<Void> start(SyncTable table, CompletableFuture<Void> prerequisite, ExecutorService executor) {
+        Watermark watermark = fullResync ? Watermark.NONE : loadWatermark(table);
+        BlockingQueue<Page> queue = new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        StageTimings stageTimings = new StageTimings(table, watermark);
+        timings.add(stageTimings);
+
+        CompletableFuture.runAsync(() -> fetch(table, watermark, queue, aborted, stageTimings), executor);
+        return CompletableFuture.runAsync(() -> write(table, watermark, queue, aborted, prerequisite, stageTimings), executor);
+    }
+
+    // --- Fetch + decode stage ---
+
+    private void fetch(SyncTable table, Watermark watermark, BlockingQueue<Page> queue,
+                       AtomicBoolean aborted, StageTimings stageTimings) {
+        Firestore db = FirebaseService.getFirestore();
+        Query query = buildQuery(db, table, watermark);
+        Watermark highWater = watermark;
+        boolean complete = false;
+        // A full read sees every document, so it can tell which local rows were deleted meanwhile
+        List<String> seenIds = watermark.isSet() ? null : new ArrayList<>();
+
+        try {
+            QueryDocumentSnapshot lastDoc = null;
+            while (!aborted.get()) {
+                long fetchStart = System.nanoTime();
+                Query pageQuery = lastDoc == null ? query.limit(PAGE_SIZE) : query.startAfter(lastDoc).limit(PAGE_SIZE);
+                List<QueryDocumentSnapshot> docs = pageQuery.get().get().getDocuments();
+                stageTimings.fetchNanos.addAndGet(System.nanoTime() - fetchStart);
+                if (docs.isEmpty()) {
+                    complete = true;
+                    break;
+                }
+
+                long decodeStart = System.nanoTime();
+                List<Object[]> rows = new ArrayList<>(docs.size());
+                for (QueryDocumentSnapshot doc : docs) {
+                    rows.add(table.decoder.decode(doc));
+                    if (seenIds != null) seenIds.add(doc.getId());
+                    if (table.watermarkField != null) highWater = highWater.advance(doc.get(table.watermarkField));
+                }
+                stageTimings.decodeNanos.addAndGet(System.nanoTime() - decodeStart);
+                stageTimings.pages.incrementAndGet();
+                stageTimings.rows.addAndGet(rows.size());
+
+                lastDoc = docs.get(docs.size() - 1);
+                queue.put(new Page(rows, null, false, null));
+                if (docs.size() < PAGE_SIZE) {
+                    complete = true;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            System.err.println("Failed to fetch " + table + " from Firebase: " + e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            System.err.println("Failed to decode " + table + ": " + e.getMessage());
+        } finally {
+            // Only a complete read may advance the watermark
+            putUninterruptibly(queue, new Page(null, highWater, complete, seenIds));
+        }
+    }
+
+    // --- Write stage ---
+
+    private void write(SyncTable table, Watermark watermark, BlockingQueue<Page> queue, AtomicBoolean aborted,
+                       CompletableFuture<Void> prerequisite, StageTimings stageTimings) {
+        AtomicBoolean endReached = new AtomicBoolean(false);
+
+        try (Connection conn = DatabaseService.getConnection()) {
+            conn.setAutoCommit(false);
+            if (useBulkLoad(table, watermark)) {
+                stageTimings.strategy = "copy";
+                copyAndMerge(conn, table, queue, endReached, prerequisite, stageTimings);
+            } else {
+                upsertPages(conn, table, queue, endReached, prerequisite, stageTimings);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.err.println("Failed to sync " + table + " to PostgreSQL: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // e.g. a bind that doesn't match the decoded row, or a failed prerequisite
+            e.printStackTrace();
+            System.err.println("Failed to sync " + table + ": " + e.getMessage());
+        } finally {
+            if (!endReached.get()) {
+                // Writer gave up early: stop the fetcher and unblock it if it is waiting on a full queue
+                aborted.set(true);
+                drain(queue);
+            }
+        }
+    }
+
+    private void upsertPages(Connection conn, SyncTable table, BlockingQueue<Page> queue, AtomicBoolean endReached,
+                             CompletableFuture<Void> prerequisite, StageTimings stageTimings) throws SQLException, InterruptedException {
+        boolean prerequisiteMet = false;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(table.upsertSql)) {
+            while (true) {
+                Page page = queue.take();
+                if (page.isEnd()) {
+                    endReached.set(true);
+                    if (page.complete) {
+                        deleteMissing(conn, table, page.seenIds);
+                        saveWatermark(conn, table, page.watermark, fullResync);
+                        conn.commit();
+                    }
+                    return;
+                }
+
+                if (!prerequisiteMet) {
+                    awaitPrerequisite(prerequisite, stageTimings);
+                    prerequisiteMet = true;
+                }
+
+                long writeStart = System.nanoTime();
+                int pending = 0;
+                for (Object[] row : page.rows) {
+                    table.bind(conn, pstmt, row);
+                    pstmt.addBatch();
+                    if (++pending >= BATCH_SIZE) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) pstmt.executeBatch();
+                conn.commit();
+                stageTimings.writeNanos.addAndGet(System.nanoTime() - writeStart);
+            }
+        }
+    }
+
+    /**
+     * Streams every page into the staging table with one binary COPY, then merges it into the
+     * target in the same transaction. Staging has no foreign keys, so only the merge waits on
+     * the prerequisite; an incomplete read is rolled back rather than merged.
+     */
+    private void copyAndMerge(Connection conn, SyncTable table, BlockingQueue<Page> queue, AtomicBoolean endReached,
+                              CompletableFuture<Void> prerequisite, StageTimings stageTimings) throws SQLException, InterruptedException {
+        table.prepareStaging(conn);
+
+        Page end;
+        long copied;
+        try (PgBinaryCopyWriter copy = new PgBinaryCopyWriter(conn, table.copySql, table.columnTypes)) {
+            while (true) {
+                Page page = queue.take();
+                if (page.isEnd()) {
+                    endReached.set(true);
+                    end = page;
+                    break;
+                }
+                long writeStart = System.nanoTime();
+                for (Object[] row : page.rows) {
+                    copy.writeRow(row);
+                }
+                stageTimings.writeNanos.addAndGet(System.nanoTime() - writeStart);
+            }
+            if (!end.complete) {
+                copy.cancel(); // before rolling back
+                conn.rollback();
+                return;
+            }
+            long writeStart = System.nanoTime();
+            copied = copy.finish();
+            stageTimings.writeNanos.addAndGet(System.nanoTime() - writeStart);
+        }
+
+        awaitPrerequisite(prerequisite, stageTimings);
+
+        long mergeStart = System.nanoTime();
+        int merged = table.mergeStaging(conn);
+        deleteMissing(conn, table, end.seenIds);
+        saveWatermark(conn, table, end.watermark, fullResync);
+        conn.commit();
+        stageTimings.writeNanos.addAndGet(System.nanoTime() - mergeStart);
+        System.out.println("[Sync] " + table + ": copied " + copied + " rows to " + table.stagingTable + ", merged " + merged + ".");
+    }
+
+    /**
+     * After a complete full read, deletes the local rows whose document is gone. Incremental reads
+     * and live listeners only see documents that changed, so this is how the deletion of an older
+     * document reaches PostgreSQL. Runs under a savepoint: if a delete is blocked (a user whose
+     * notes are still local) the read is kept and the next full read tries again.
+     */
+    private static void deleteMissing(Connection conn, SyncTable table, List<String> seenIds) throws SQLException {
+        // An empty read is more likely a misconfigured project than a collection emptied on purpose
+        if (seenIds == null || seenIds.isEmpty()) return;
+        Savepoint savepoint = conn.setSavepoint();
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement insert = conn.prepareStatement("INSERT INTO sync_seen_ids SELECT unnest(?::varchar[]) ON CONFLICT DO NOTHING")) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS sync_seen_ids (id VARCHAR(255) PRIMARY KEY) ON COMMIT DELETE ROWS");
+            for (int from = 0; from < seenIds.size(); from += ID_CHUNK) {
+                List<String> chunk = seenIds.subList(from, Math.min(from + ID_CHUNK, seenIds.size()));
+                insert.setArray(1, conn.createArrayOf("varchar", chunk.toArray()));
+                insert.executeUpdate();
+            }
+            int deleted = stmt.executeUpdate("DELETE FROM " + table.table + " t WHERE NOT EXISTS " +
+                    "(SELECT 1 FROM sync_seen_ids s WHERE s.id = t." + table.idColumn + ")");
+            conn.releaseSavepoint(savepoint);
+            if (deleted > 0) {
+                System.out.println("[Sync] " + table + ": removed " + deleted + " rows deleted in Firestore.");
+            }
+        } catch (SQLException e) {
+            conn.rollback(savepoint);
+            System.err.println("[Sync] " + table + ": could not remove deleted rows, retrying on the next full read: " + e.getMessage());
+        }
+    }
+
+    private static void awaitPrerequisite(CompletableFuture<Void> prerequisite, StageTimings stageTimings) {
+        long waitStart = System.nanoTime();
+        prerequisite.join();
+        stageTimings.waitNanos.addAndGet(System.nanoTime() - waitStart);
+    }
+
+    /**
+     * Bulk loading pays off only for large reads; deltas from a watermark always use upserts.
+     * The document count comes from a Firestore count() aggregation, which is cheap to run.
+     */
+    private boolean useBulkLoad(SyncTable table, Watermark watermark) {
+        if (BULK_THRESHOLD < 0 || (watermark.isSet() && !fullResync)) {
+            return false;
+        }
+        try {
+            long count = buildQuery(FirebaseService.getFirestore(), table, watermark).count().get().get().getCount();
+            return count >= BULK_THRESHOLD;
+        } catch (ExecutionException e) {
+            System.err.println("Failed to count " + table + ", using upserts: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static void drain(BlockingQueue<Page> queue) {
+        try {
+            Page page;
+            do {
+                page = queue.poll(30, TimeUnit.SECONDS);
+            } while (page != null && !page.isEnd());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<Page> queue, Page page) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(page);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static final class Page {
+        final List<Object[]> rows;
+        final Watermark watermark;
+        final boolean complete;
+        // End of a full read only: every document id it returned
+        final List<String> seenIds;
+
+        Page(List<Object[]> rows, Watermark watermark, boolean complete, List<String> seenIds) {
+            this.rows = rows;
+            this.watermark = watermark;
+            this.complete = complete;
+            this.seenIds = seenIds;
+        }
+
+        boolean isEnd() {
+            return rows == null;
+        }
+    }
+
+    private static final class StageTimings {
+        final SyncTable table;
+        final Watermark watermark;
+        final AtomicInteger pages = new AtomicInteger();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong fetchNanos = new AtomicLong();
+        final AtomicLong decodeNanos = new AtomicLong();
+        final AtomicLong waitNanos = new AtomicLong();
+        final AtomicLong writeNanos = new AtomicLong();
+        volatile String strategy = "upsert";
+
+        StageTimings(SyncTable table, Watermark watermark) {
+            this.table = table;
+            this.watermark = watermark;
+        }
+
+        @Override
+        public String toString() {
+            return table + ": " + rows.get() + " docs in " + pages.get() + " page(s)" + describe(watermark) +
+                   " | fetch " + TimeUnit.NANOSECONDS.toMillis(fetchNanos.get()) + " ms" +
+                   ", decode " + TimeUnit.NANOSECONDS.toMillis(decodeNanos.get()) + " ms" +
+                   ", waited " + TimeUnit.NANOSECONDS.toMillis(waitNanos.get()) + " ms" +
+                   ", write (" + strategy + ") " + TimeUnit.NANOSECONDS.toMillis(writeNanos.get()) + " ms";
+        }
+    }
+
+    // --- Watermark handling ---
+
+    /**
+     * Per-collection high-water mark. Firestore only compares values of the same type,
+     * so we remember whether the field was a Timestamp or a plain epoch-millis Long.
+     */
+    static final class Watermark {
+        static final Watermark NONE = new Watermark(0L, false);
+
+        final long millis;
+        final boolean timestampType;
+
+        Watermark(long millis, boolean timestampType) {
+            this.millis = millis;
+            this.timestampType = timestampType;
+        }
+
+        boolean isSet() {
+            return millis > 0;
+        }
+
+        Watermark advance(Object fieldValue) {
+            if (fieldValue instanceof com.google.cloud.Timestamp) {
+                long value = ((com.google.cloud.Timestamp) fieldValue).toDate().getTime();
+                return value > millis ? new Watermark(value, true) : this;
+            } else if (fieldValue instanceof Number) {
+                long value = ((Number) fieldValue).longValue();
+                return value > millis ? new Watermark(value, false) : this;
+            }
+            return this;
+        }
+
+        Object toFirestoreValue() {
+            return timestampType ? com.google.cloud.Timestamp.of(new Date(millis)) : (Object) millis;
+        }
+    }
+
+    static Query buildQuery(Firestore db, SyncTable table, Watermark watermark) {
+        // Document id is the page cursor; an inequality filter must be ordered on its own field first
+        if (!watermark.isSet()) {
+            return db.collection(table.collection).orderBy(FieldPath.documentId());
+        }
+        return db.collection(table.collection)
+                .whereGreaterThan(table.watermarkField, watermark.toFirestoreValue())
+                .orderBy(table.watermarkField)
+                .orderBy(FieldPath.documentId());
+    }
+
+    private static String describe(Watermark watermark) {
+        return watermark.isSet() ? " (changed since " + new Date(watermark.millis) + ")" : " (full read)";
+    }
+
+    static Watermark loadWatermark(SyncTable table) {
+        // A watermark is only meaningful if the local table still holds the data it describes
+        if (table.watermarkField == null || DatabaseService.getRecordCount(table.table) == 0) {
+            return Watermark.NONE;
+        }
+        String sql = "SELECT high_water_mark, is_timestamp FROM sync_state WHERE collection = ?";
+        try (Connection conn = DatabaseService.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table.collection);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new Watermark(rs.getLong("high_water_mark"), rs.getBoolean("is_timestamp"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to load sync watermark for " + table + ": " + e.getMessage());
+        }
+        return Watermark.NONE;
+    }
+
+    static void saveWatermark(Connection conn, SyncTable table, Watermark watermark, boolean fullResync) throws SQLException {
+        String sql = "INSERT INTO sync_state (collection, high_water_mark, is_timestamp, last_synced_at, last_full_sync_at) " +
+                     "VALUES (?, ?, ?, CURRENT_TIMESTAMP, ?) " +
+                     "ON CONFLICT (collection) DO UPDATE SET " +
+                     "high_water_mark = GREATEST(sync_state.high_water_mark, EXCLUDED.high_water_mark), " +
+                     "is_timestamp = EXCLUDED.is_timestamp, " +
+                     "last_synced_at = CURRENT_TIMESTAMP, " +
+                     "last_full_sync_at = COALESCE(EXCLUDED.last_full_sync_at, sync_state.last_full_sync_at)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table.collection);
+            pstmt.setLong(2, watermark.millis);
+            pstmt.setBoolean(3, watermark.timestampType);
+            pstmt.setTimestamp(4, fullResync ? new Timestamp(System.currentTimeMillis()) : null);
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.visiboard.pc.services;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps one Firestore collection onto its local PostgreSQL table: which field it is
+ * watermarked on, how a document decodes into a row, and how that row is upserted.
+ * Decoding is kept separate from binding so it can run off the JDBC writer thread.
+ */
+final class SyncTable {
+
+    @FunctionalInterface
+    interface RowDecoder {
+        Object[] decode(DocumentSnapshot doc);
+    }
+
+    private static final String USERS_COLUMNS =
+            "user_id, username, email, display_name, photo_url, created_at, total_likes_received, followers_count, following_count, is_banned, ban_expiry, is_restricted, restriction_expiry";
+
+    private static final String USERS_ON_CONFLICT =
+            "ON CONFLICT (user_id) DO UPDATE SET " +
+            "username = EXCLUDED.username, " +
+            "email = EXCLUDED.email, " +
+            "display_name = EXCLUDED.display_name, " +
+            "photo_url = EXCLUDED.photo_url, " +
+            "total_likes_received = EXCLUDED.total_likes_received, " +
+            "followers_count = EXCLUDED.followers_count, " +
+            "following_count = EXCLUDED.following_count, " +
+            "is_banned = EXCLUDED.is_banned, " +
+            "ban_expiry = EXCLUDED.ban_expiry, " +
+            "is_restricted = EXCLUDED.is_restricted, " +
+            "restriction_expiry = EXCLUDED.restriction_expiry, " +
+            "synced_at = CURRENT_TIMESTAMP " +
+            // Skip the write entirely when nothing changed
+            "WHERE (users.username, users.email, users.display_name, users.photo_url, users.total_likes_received, " +
+            "users.followers_count, users.following_count, users.is_banned, users.ban_expiry, users.is_restricted, users.restriction_expiry) " +
+            "IS DISTINCT FROM (EXCLUDED.username, EXCLUDED.email, EXCLUDED.display_name, EXCLUDED.photo_url, EXCLUDED.total_likes_received, " +
+            "EXCLUDED.followers_count, EXCLUDED.following_count, EXCLUDED.is_banned, EXCLUDED.ban_expiry, EXCLUDED.is_restricted, EXCLUDED.restriction_expiry)";
+
+    private static final String NOTES_COLUMNS =
+            "note_id, user_id, content, image_url, latitude, longitude, likes_count, is_hidden, created_at, liked_by_users";
+
+    private static final String NOTES_ON_CONFLICT =
+            "ON CONFLICT (note_id) DO UPDATE SET " +
+            "content = EXCLUDED.content, " +
+            "image_url = EXCLUDED.image_url, " +
+            "likes_count = EXCLUDED.likes_count, " +
+            "is_hidden = EXCLUDED.is_hidden, " +
+            "liked_by_users = EXCLUDED.liked_by_users, " +
+            "synced_at = CURRENT_TIMESTAMP " +
+            "WHERE (notes.content, notes.image_url, notes.likes_count, notes.is_hidden, notes.liked_by_users) " +
+            "IS DISTINCT FROM (EXCLUDED.content, EXCLUDED.image_url, EXCLUDED.likes_count, EXCLUDED.is_hidden, EXCLUDED.liked_by_users)";
+
+    private static final String REPORTS_COLUMNS =
+            "report_id, reporter_id, reported_user_id, reported_note_id, category, description, reason, target_details, type, timestamp, status";
+
+    private static final String REPORTS_ON_CONFLICT =
+            "ON CONFLICT (report_id) DO UPDATE SET " +
+            "status = EXCLUDED.status, " +
+            "synced_at = CURRENT_TIMESTAMP " +
+            "WHERE reports.status IS DISTINCT FROM EXCLUDED.status";
+
+    private static final String NOTIFICATIONS_COLUMNS =
+            "notification_id, user_id, message, type, is_read, created_at";
+
+    private static final String NOTIFICATIONS_ON_CONFLICT =
+            "ON CONFLICT (notification_id) DO UPDATE SET " +
+            "message = EXCLUDED.message, " +
+            "type = EXCLUDED.type, " +
+            "is_read = EXCLUDED.is_read " +
+            "WHERE (notifications.message, notifications.type, notifications.is_read) " +
+            "IS DISTINCT FROM (EXCLUDED.message, EXCLUDED.type, EXCLUDED.is_read)";
+
+    // Watermarks need a field every writer (mobile app, admin app, functions) bumps on each change.
+    // Nothing in the clients guarantees one, and a document without it would silently drop out of
+    // every incremental read, so collections are read in full unless a deployment names its
+    // updated-at field with -Dvisiboard.sync.<collection>.updatedField (e.g. updatedAt). Creation
+    // times ("timestamp") don't qualify: later changes such as a report's status or a notification's
+    // read flag would never pass the filter.
+    static final SyncTable USERS = new SyncTable("users", "users", "user_id", updatedField("users"), null, null, USERS_COLUMNS, USERS_ON_CONFLICT, true,
+            new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP,
+                       Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.BOOLEAN, Types.BIGINT, Types.BOOLEAN, Types.BIGINT},
+            SyncTable::decodeUser);
+
+    // notes.user_id references users, so notes are only written once users are in place
+    static final SyncTable NOTES = new SyncTable("notes", "notes", "note_id", updatedField("notes"), null, USERS, NOTES_COLUMNS, NOTES_ON_CONFLICT, true,
+            new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.DOUBLE, Types.DOUBLE,
+                       Types.INTEGER, Types.BOOLEAN, Types.TIMESTAMP, Types.ARRAY},
+            SyncTable::decodeNote);
+
+    static final SyncTable REPORTS = new SyncTable("reports", "reports", "report_id", updatedField("reports"), "timestamp", null, REPORTS_COLUMNS, REPORTS_ON_CONFLICT, true,
+            new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+                       Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.VARCHAR},
+            SyncTable::decodeReport);
+
+    static final SyncTable NOTIFICATIONS = new SyncTable("notifications", "notifications", "notification_id", updatedField("notifications"), "timestamp", null,
+            NOTIFICATIONS_COLUMNS, NOTIFICATIONS_ON_CONFLICT, false,
+            new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BOOLEAN, Types.BIGINT},
+            SyncTable::decodeNotification);
+
+    final String collection;
+    final String table;
+    final String idColumn;
+    // Null for collections that are always read in full
+    final String watermarkField;
+    // Epoch-millis creation time, set once when the document is written. Live sync uses it to
+    // follow new documents of collections without a watermark. Null where the type is not
+    // reliable (notes carry either a Timestamp or a Long createdAt) or there is none (users).
+    final String createdField;
+    final SyncTable writeAfter;
+    final String upsertSql;
+    // Bulk path: binary COPY into an unlogged staging table, then one set-based merge
+    final String stagingTable;
+    final String copySql;
+    final String mergeSql;
+    final int[] columnTypes;
+    final RowDecoder decoder;
+
+    private SyncTable(String collection, String table, String idColumn, String watermarkField, String createdField, SyncTable writeAfter,
+                      String columns, String onConflict, boolean touchSyncedAt, int[] columnTypes, RowDecoder decoder) {
+        this.collection = collection;
+        this.table = table;
+        this.idColumn = idColumn;
+        this.watermarkField = watermarkField;
+        this.createdField = createdField;
+        this.writeAfter = writeAfter;
+        this.columnTypes = columnTypes;
+        this.decoder = decoder;
+
+        String targetColumns = touchSyncedAt ? columns + ", synced_at" : columns;
+        String syncedAt = touchSyncedAt ? ", CURRENT_TIMESTAMP" : "";
+        String placeholders = String.join(", ", Collections.nCopies(columnTypes.length, "?"));
+        this.upsertSql = "INSERT INTO " + table + " (" + targetColumns + ") " +
+                         "VALUES (" + placeholders + syncedAt + ") " + onConflict;
+
+        this.stagingTable = table + "_staging";
+        this.copySql = "COPY " + stagingTable + " (" + columns + ") FROM STDIN (FORMAT binary)";
+        // ON CONFLICT cannot touch the same row twice in one statement, so keep one row per id
+        this.mergeSql = "INSERT INTO " + table + " (" + targetColumns + ") " +
+                        "SELECT DISTINCT ON (" + idColumn + ") " + columns + syncedAt + " FROM " + stagingTable + " " +
+                        "ORDER BY " + idColumn + " " + onConflict;
+    }
+
+    /**
+     * (Re)creates the empty staging table. It copies the target's column types but no
+     * constraints, and is unlogged since its contents never need to survive a crash.
+     */
+    void prepareStaging(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE UNLOGGED TABLE IF NOT EXISTS " + stagingTable + " (LIKE " + table + " INCLUDING DEFAULTS)");
+            stmt.execute("TRUNCATE " + stagingTable);
+        }
+    }
+
+    /**
+     * Merges the staging table into the target and empties it. Returns the number of rows written.
+     */
+    int mergeStaging(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            int merged = stmt.executeUpdate(mergeSql);
+            stmt.execute("TRUNCATE " + stagingTable);
+            return merged;
+        }
+    }
+
+    /**
+     * Binds a decoded row onto the upsert statement (parameters follow column order).
+     */
+    void bind(Connection conn, PreparedStatement pstmt, Object[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            Object value = row[i];
+            if (value == null) {
+                pstmt.setNull(i + 1, columnTypes[i]);
+            } else if (columnTypes[i] == Types.ARRAY) {
+                pstmt.setArray(i + 1, conn.createArrayOf("text", (Object[]) value));
+            } else {
+                pstmt.setObject(i + 1, value, columnTypes[i]);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return collection;
+    }
+
+    private static String updatedField(String collection) {
+        String field = System.getProperty("visiboard.sync." + collection + ".updatedField");
+        return field == null || field.isBlank() ? null : field;
+    }
+
+    // --- Decoders ---
+
+    private static Object[] decodeUser(DocumentSnapshot doc) {
+        // Robust field fetching (camelCase vs snake_case)
+        String userId = doc.getId();
+        String username = getString(doc, "username", "userName", "name"); // Fallback for name
+        String email = getString(doc, "email");
+        String displayName = getString(doc, "displayName", "display_name", "name"); // Fallback chain
+        String photoUrl = getString(doc, "photoUrl", "photo_url", "profilePicUrl", "profile_pic_url", "profilePic");
+
+        // Stats
+        Long likes = getLong(doc, "totalLikesReceived", "totalLikes");
+        Long followers = getLong(doc, "followersCount", "followers");
+        Long following = doc.getLong("followingCount");
+
+        // Moderation
+        Boolean banned = doc.getBoolean("banned");
+        if (banned == null) banned = doc.getBoolean("isBanned");
+        if (banned == null) banned = false;
+
+        Long banExpiry = getLong(doc, "banExpiryDate", "banExpiry");
+
+        Boolean restricted = doc.getBoolean("restricted");
+        if (restricted == null) restricted = doc.getBoolean("isRestricted");
+        if (restricted == null) restricted = false;
+
+        Long restrictExpiry = getLong(doc, "restrictionExpiryDate", "restrictionExpiry");
+
+        return new Object[] {
+                userId,
+                username,
+                email,
+                displayName,
+                photoUrl,
+                new Timestamp(System.currentTimeMillis()), // Placeholder for CreatedAt
+                likes != null ? likes.intValue() : 0,
+                followers != null ? followers.intValue() : 0,
+                following != null ? following.intValue() : 0,
+                banned,
+                banExpiry != null ? banExpiry : 0L,
+                restricted,
+                restrictExpiry != null ? restrictExpiry : 0L
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object[] decodeNote(DocumentSnapshot doc) {
+        Double lat = getDouble(doc, "latitude", "lat");
+        Double lon = getDouble(doc, "longitude", "lng", "lon");
+        Long likes = getLong(doc, "likesCount", "likeCount", "likes");
+        Boolean hidden = doc.getBoolean("isHidden");
+
+        // Handle Timestamp
+        Object createdObj = doc.get("createdAt");
+        if (createdObj == null) createdObj = doc.get("timestamp"); // Fallback
+
+        Timestamp createdAt;
+        if (createdObj instanceof com.google.cloud.Timestamp) {
+            createdAt = new Timestamp(((com.google.cloud.Timestamp) createdObj).toDate().getTime());
+        } else if (createdObj instanceof Long) {
+            createdAt = new Timestamp((Long) createdObj);
+        } else {
+            createdAt = new Timestamp(System.currentTimeMillis());
+        }
+
+        // Handle likedByUsers
+        List<String> likedBy = (List<String>) doc.get("likedByUsers");
+
+        return new Object[] {
+                doc.getId(),
+                getString(doc, "userId", "user_id"),
+                getString(doc, "text", "note", "content"),
+                getString(doc, "imageUrl", "image_url", "imageBase64"),
+                lat != null ? lat : 0.0,
+                lon != null ? lon : 0.0,
+                likes != null ? likes.intValue() : 0,
+                hidden != null && hidden,
+                createdAt,
+                likedBy != null ? likedBy.toArray(new String[0]) : null
+        };
+    }
+
+    private static Object[] decodeReport(DocumentSnapshot doc) {
+        String type = getString(doc, "type"); // NOTE or USER
+        String targetId = getString(doc, "targetId", "target_id");
+
+        // Map targetId to specific columns based on type
+        String reportedUser = getString(doc, "reportedUserId", "reported_user_id"); // Fallback legacy
+        String reportedNote = getString(doc, "reportedNoteId", "reported_note_id"); // Fallback legacy
+
+        if ("NOTE".equalsIgnoreCase(type)) {
+            if (targetId != null) reportedNote = targetId;
+        } else {
+             // Default to user report if not Note
+            if (targetId != null) reportedUser = targetId;
+        }
+
+        Long ts = doc.getLong("timestamp");
+        String status = doc.getString("status");
+
+        return new Object[] {
+                doc.getId(),
+                getString(doc, "reporterId", "reporter_id"),
+                reportedUser,
+                reportedNote,
+                getString(doc, "category"), // Category: SPAM, HATE_SPEECH, VIOLENCE, NUDITY, OTHER
+                getString(doc, "description"), // Description: User-provided additional details
+                getString(doc, "reason", "description"), // Reason: Legacy field (fallback to description if reason is empty)
+                getString(doc, "targetDetails", "target_details"),
+                type,
+                ts != null ? ts : System.currentTimeMillis(),
+                status != null ? status : "PENDING"
+        };
+    }
+
+    private static Object[] decodeNotification(DocumentSnapshot doc) {
+        Boolean read = doc.getBoolean("read");
+        if (read == null) read = doc.getBoolean("isRead");
+        Long ts = getLong(doc, "timestamp", "createdAt");
+
+        return new Object[] {
+                doc.getId(),
+                getString(doc, "toUserId", "userId", "user_id"),
+                getString(doc, "messageText", "message"),
+                getString(doc, "type"),
+                read != null && read,
+                ts != null ? ts : System.currentTimeMillis()
+        };
+    }
+
+    private static String getString(DocumentSnapshot doc, String... keys) {
+        for (String key : keys) {
+            if (doc.contains(key)) {
+                String val = doc.getString(key);
+                if (val != null) return val;
+            }
+        }
+        return null;
+    }
+
+    private static Long getLong(DocumentSnapshot doc, String... keys) {
+        for (String key : keys) {
+            if (doc.contains(key)) {
+                Long val = doc.getLong(key);
+                if (val != null) return val;
+            }
+        }
+        return null;
+    }
+
+    private static Double getDouble(DocumentSnapshot doc, String... keys) {
+        for (String key : keys) {
+            if (doc.contains(key)) {
+                Double val = doc.getDouble(key);
+                if (val != null) return val;
+            }
+        }
+        return null;
+    }
+}
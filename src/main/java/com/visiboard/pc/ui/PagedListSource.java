@@ -0,0 +1,182 @@
+package com.visiboard.pc.ui;
+
+import com.visiboard.pc.services.KeysetPage;
+import com.visiboard.pc.util.TaskScope;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ScrollBar;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Lazily pages a keyset-paginated query into a ListView.
+ *
+ * Only the first page is read up front; the next page is fetched in the background when the
+ * user scrolls near the end of what is loaded, or straight away while the loaded rows do not
+ * yet fill the list. Pages are read off the FX thread and appended on it. A failed load is
+ * reported to {@link #setOnLoadFailed} and retried on the next scroll or reset. {@link #reset()} discards everything (e.g. when the search filter changes) and cancels
+ * the page still loading, if any. Loads run in a {@link TaskScope}, so they can also be cancelled
+ * with the view that owns the list.
+ */
+public class PagedListSource<T> {
+
+    @FunctionalInterface
+    public interface PageFetcher<T> {
+        /** Reads the page after {@code previous}, or the first page when it is null. Runs off the FX thread. */
+        KeysetPage<T> fetch(KeysetPage<T> previous, int pageSize);
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = Integer.getInteger("visiboard.ui.pageSize", 100);
+    // Start loading the next page when the scroll position passes this fraction of the list
+    private static final double PREFETCH_AT = 0.8;
+
+    private final ObservableList<T> items = FXCollections.observableArrayList();
+    private final PageFetcher<T> fetcher;
+    private final int pageSize;
+
+    private KeysetPage<T> lastPage;
+    private boolean loading;
+    private int generation;
+    private Runnable onPageLoaded;
+    private Consumer<Throwable> onLoadFailed;
+    private ListView<T> listView;
+    private TaskScope scope = new TaskScope("PagedList");
+
+    public PagedListSource(PageFetcher<T> fetcher) {
+        this(fetcher, DEFAULT_PAGE_SIZE);
+    }
+
+    public PagedListSource(PageFetcher<T> fetcher, int pageSize) {
+        this.fetcher = fetcher;
+        this.pageSize = pageSize;
+    }
+
+    public ObservableList<T> getItems() {
+        return items;
+    }
+
+    /**
+     * True until the last page has been read.
+     */
+    public boolean hasMore() {
+        return lastPage == null || lastPage.hasMore();
+    }
+
+    public void setOnPageLoaded(Runnable onPageLoaded) {
+        this.onPageLoaded = onPageLoaded;
+    }
+
+    /**
+     * Called on the FX thread when a page could not be read (not when the load was cancelled).
+     */
+    public void setOnLoadFailed(Consumer<Throwable> onLoadFailed) {
+        this.onLoadFailed = onLoadFailed;
+    }
+
+    /**
+     * Loads pages in {@code scope}, e.g. the scope of the view showing the list.
+     */
+    public void setScope(TaskScope scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Shows this source in {@code listView} and loads more as it scrolls.
+     */
+    public void attach(ListView<T> listView) {
+        this.listView = listView;
+        listView.setItems(items);
+        // The scroll bar only exists once the skin is built
+        listView.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+            hookScrollBar(listView);
+            Platform.runLater(this::fillViewport);
+        });
+        // Growing the window (or first showing a tab) can leave room for more rows
+        listView.heightProperty().addListener((obs, oldHeight, newHeight) -> Platform.runLater(this::fillViewport));
+        hookScrollBar(listView);
+    }
+
+    /**
+     * Clears the list and reloads from the first page. Call on the FX thread.
+     */
+    public void reset() {
+        generation++;
+        lastPage = null;
+        loading = false;
+        items.clear();
+        loadMore();
+    }
+
+    /**
+     * Fetches the next page unless one is already loading or there is none. Call on the FX thread.
+     */
+    public void loadMore() {
+        if (loading || !hasMore()) return;
+        loading = true;
+
+        int requestGeneration = generation;
+        KeysetPage<T> previous = lastPage;
+        // Keyed by this source, so the load started by reset() cancels the one it replaces
+        scope.run(this, () -> fetcher.fetch(previous, pageSize), page -> {
+            if (requestGeneration != generation) return; // superseded by reset()
+            lastPage = page;
+            loading = false;
+            items.addAll(page.getItems());
+            if (onPageLoaded != null) onPageLoaded.run();
+            fillViewport();
+        }).whenComplete((page, error) -> {
+            if (error != null) {
+                // Cancelled or failed: allow the next scroll or reset to try again
+                Platform.runLater(() -> {
+                    if (requestGeneration != generation) return;
+                    loading = false;
+                    if (!(error instanceof CancellationException) && onLoadFailed != null) {
+                        onLoadFailed.accept(error);
+                    }
+                });
+            }
+        });
+    }
+
+    // A page that does not fill the list leaves nothing to scroll, so the scroll listener would
+    // never ask for the next one: keep loading until the list overflows or there is no more.
+    private void fillViewport() {
+        if (listView == null || lastPage == null || loading || !hasMore()) return;
+        if (listView.getSkin() == null || listView.getHeight() <= 0) return; // not shown yet
+        listView.layout(); // so the scroll bar reflects the rows just added
+        ScrollBar bar = verticalScrollBar(listView);
+        if (bar != null && (!bar.isVisible() || bar.getValue() >= bar.getMax() * PREFETCH_AT)) {
+            loadMore();
+        }
+    }
+
+    private void hookScrollBar(ListView<T> listView) {
+        ScrollBar bar = verticalScrollBar(listView);
+        if (bar == null || bar.getProperties().containsKey(PagedListSource.class)) return;
+        bar.getProperties().put(PagedListSource.class, Boolean.TRUE);
+        bar.valueProperty().addListener((obs, oldValue, newValue) -> {
+            if (newValue.doubleValue() >= bar.getMax() * PREFETCH_AT) {
+                loadMore();
+            }
+        });
+        // e.g. live-sync deletes shrank the list until it no longer scrolls. This fires inside a
+        // layout pass, so check once it is over.
+        bar.visibleProperty().addListener((obs, wasVisible, visible) -> {
+            if (!visible) Platform.runLater(this::fillViewport);
+        });
+    }
+
+    private static ScrollBar verticalScrollBar(ListView<?> listView) {
+        for (Node node : listView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                return (ScrollBar) node;
+            }
+        }
+        return null;
+    }
+}
@@ -12,6 +12,7 @@ import javafx.scene.layout.VBox;
 import javafx.scene.shape.Circle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import com.visiboard.pc.util.TaskScope;
 import com.visiboard.pc.util.UserSession;
 
 import java.io.ByteArrayInputStream;
@@ -23,11 +24,14 @@ public class UserInfoDialog extends Dialog<Void> {
 
     private final ApiService apiService;
     private final boolean fromReports; // Context flag
+    // Loads for this dialog; closing it cancels them
+    private final TaskScope scope = new TaskScope("UserInfo");
 
     // Constructor with context flag
     public UserInfoDialog(String firebaseUid, String fallbackName, boolean fromReports) {
         this.apiService = new ApiService();
         this.fromReports = fromReports;
+        setOnHidden(e -> scope.close());
 
         setTitle("User Profile");
         setHeaderText(null);
@@ -61,6 +65,7 @@ public class UserInfoDialog extends Dialog<Void> {
     public UserInfoDialog(User user, boolean fromReports) {
         this.apiService = new ApiService();
         this.fromReports = fromReports;
+        setOnHidden(e -> scope.close());
         
         setTitle("User Profile");
         setHeaderText(null);
@@ -90,7 +95,7 @@ public class UserInfoDialog extends Dialog<Void> {
              userFuture = apiService.getUserByFirebaseUid(idInput);
         }
 
-        userFuture.thenAccept(user -> {
+        scope.track(userFuture).thenAccept(user -> {
             Platform.runLater(() -> {
                 if (user != null) {
                     displayUser(user, (HBox) root);
@@ -99,6 +104,7 @@ public class UserInfoDialog extends Dialog<Void> {
                 }
             });
         }).exceptionally(e -> {
+             if (userFuture.isCancelled()) return null; // dialog closed
              e.printStackTrace();
              Platform.runLater(() -> displayFallback(fallbackName, (HBox) root));
              return null;
@@ -228,7 +234,7 @@ public class UserInfoDialog extends Dialog<Void> {
              followBtn.setPrefWidth(200);
              followBtn.setStyle("-fx-background-color: #444; -fx-text-fill: white; -fx-cursor: hand; -fx-background-radius: 20;");
              if (user.getFirebaseUid() != null) {
-                 apiService.isFollowing(user.getFirebaseUid()).thenAccept(isFollowing -> {
+                 scope.track(apiService.isFollowing(user.getFirebaseUid())).thenAccept(isFollowing -> {
                      Platform.runLater(() -> updateFollowButton(followBtn, isFollowing, user.getFirebaseUid()));
                  });
                  leftPane.getChildren().add(followBtn);
@@ -333,18 +339,15 @@ public class UserInfoDialog extends Dialog<Void> {
         rightPane.getChildren().add(gridScroll);
         
         // Fetch Notes
-        new Thread(() -> {
-            java.util.List<com.visiboard.pc.model.Note> notes = com.visiboard.pc.services.DatabaseService.getNotesByUserId(user.getId());
-            Platform.runLater(() -> {
-                if (notes.isEmpty()) {
-                    notesGrid.getChildren().add(new Label("No notes found."));
-                } else {
-                    for (com.visiboard.pc.model.Note note : notes) {
-                         notesGrid.getChildren().add(createNoteCard(note));
-                    }
+        scope.run("notes", () -> com.visiboard.pc.services.DatabaseService.getNotesByUserId(user.getId()), notes -> {
+            if (notes.isEmpty()) {
+                notesGrid.getChildren().add(new Label("No notes found."));
+            } else {
+                for (com.visiboard.pc.model.Note note : notes) {
+                     notesGrid.getChildren().add(createNoteCard(note));
                 }
-            });
-        }).start();
+            }
+        });
 
         // Assemble Root
         root.getChildren().addAll(leftPane, rightPane);
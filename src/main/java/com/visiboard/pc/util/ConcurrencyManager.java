@@ -1,28 +1,246 @@
 package com.visiboard.pc.util;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * The application's executors; nothing else should start threads of its own.
+ *
+ * <ul>
+ *   <li>{@link #io()} for blocking work: JDBC, Firestore, HTTP. One virtual thread per task on
+ *       Java 21+, otherwise a bounded pool of -Dvisiboard.ioThreads (default 32) threads.
+ *       Concurrency against PostgreSQL is bounded by the Hikari pool either way.</li>
+ *   <li>{@link #cpu()} for CPU-bound work such as image decoding: one thread per core
+ *       (-Dvisiboard.cpuThreads), never more.</li>
+ *   <li>{@link #scheduler()} for delayed and periodic jobs. Scheduled tasks must be short;
+ *       anything that blocks should hand off to {@link #io()}.</li>
+ * </ul>
+ *
+ * Services that need their own ordered thread (live sync, the outbox) or a bounded job queue
+ * (bulk moderation) build it with {@link #threadFactory(String)} so every thread is named and a
+ * daemon, and {@link #register} it. {@link #describe()} reports what each executor is doing,
+ * and {@link #shutdown()} stops them all on exit.
+ */
 public class ConcurrencyManager {
-    private static final int THREAD_POOL_SIZE = 4;
-    
-    private static final ExecutorService executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE, new ThreadFactory() {
-        private final AtomicInteger counter = new AtomicInteger(1);
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread t = new Thread(r, "VisiBoard-Worker-" + counter.getAndIncrement());
+    private static final int IO_THREADS = Integer.getInteger("visiboard.ioThreads", 32);
+    private static final int CPU_THREADS = Integer.getInteger("visiboard.cpuThreads", Runtime.getRuntime().availableProcessors());
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private static final TrackedExecutor ioExecutor = new TrackedExecutor("io", newIoExecutor());
+    private static final TrackedExecutor cpuExecutor = new TrackedExecutor("cpu", newPool(CPU_THREADS, "VisiBoard-CPU"));
+    private static final ScheduledThreadPoolExecutor scheduledExecutor =
+            new ScheduledThreadPoolExecutor(1, threadFactory("VisiBoard-Scheduler"));
+
+    private static final List<ServiceExecutor> serviceExecutors = new CopyOnWriteArrayList<>();
+
+    static {
+        scheduledExecutor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Executor for blocking I/O.
+     */
+    public static ExecutorService io() {
+        return ioExecutor;
+    }
+
+    /**
+     * Executor for CPU-bound work, sized to the number of cores.
+     */
+    public static ExecutorService cpu() {
+        return cpuExecutor;
+    }
+
+    /**
+     * Single-threaded scheduler for timers and periodic jobs.
+     */
+    public static ScheduledExecutorService scheduler() {
+        return scheduledExecutor;
+    }
+
+    /**
+     * Factory for daemon threads named {@code name-1}, {@code name-2}, ...
+     */
+    public static ThreadFactory threadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger(1);
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.getAndIncrement());
             t.setDaemon(true);
             return t;
-        }
-    });
+        };
+    }
 
-    public static ExecutorService getExecutor() {
-        return executorService;
+    /**
+     * Adds an executor a service built for itself to {@link #describe()} and {@link #shutdown()}.
+     * The service may still shut it down earlier; stopped executors are forgotten.
+     */
+    public static <E extends ThreadPoolExecutor> E register(String name, E executor) {
+        serviceExecutors.removeIf(registered -> registered.executor.isTerminated());
+        serviceExecutors.add(new ServiceExecutor(name, executor));
+        return executor;
     }
-    
+
+    /**
+     * One-line summary of in-flight and completed work per executor, for logs.
+     */
+    public static String describe() {
+        StringBuilder summary = new StringBuilder()
+                .append(ioExecutor.describe()).append(", ").append(cpuExecutor.describe())
+                .append(", scheduler: ").append(scheduledExecutor.getQueue().size()).append(" scheduled");
+        for (ServiceExecutor registered : serviceExecutors) {
+            if (!registered.executor.isShutdown()) {
+                summary.append(", ").append(registered.describe());
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Stops accepting work and waits briefly for running tasks; stragglers are interrupted.
+     */
     public static void shutdown() {
-        executorService.shutdown();
+        System.out.println("[Concurrency] Shutting down (" + describe() + ")");
+        // Service executors first: their jobs may still hand work to the shared ones
+        Map<ExecutorService, String> executors = new LinkedHashMap<>();
+        for (ServiceExecutor registered : serviceExecutors) {
+            executors.put(registered.executor, registered.name);
+        }
+        executors.put(scheduledExecutor, "scheduler");
+        executors.put(cpuExecutor, "cpu");
+        executors.put(ioExecutor, "io");
+        for (ExecutorService executor : executors.keySet()) {
+            executor.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+        for (Map.Entry<ExecutorService, String> entry : executors.entrySet()) {
+            ExecutorService executor = entry.getKey();
+            List<Runnable> dropped = List.of();
+            try {
+                if (!executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    dropped = executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                dropped = executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            if (!dropped.isEmpty()) {
+                System.err.println("[Concurrency] " + entry.getValue() + ": " + dropped.size() + " queued task(s) never ran.");
+            }
+        }
+        serviceExecutors.clear();
+    }
+
+    // Virtual threads are looked up reflectively so the app still runs (on a pool) before Java 21
+    private static ExecutorService newIoExecutor() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "VisiBoard-IO-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+            System.out.println("[Concurrency] Using virtual threads for I/O");
+            return executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available (or preview-only) on this JVM
+            return newPool(IO_THREADS, "VisiBoard-IO");
+        }
+    }
+
+    private static ThreadPoolExecutor newPool(int threads, String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static final class ServiceExecutor {
+        final String name;
+        final ThreadPoolExecutor executor;
+
+        ServiceExecutor(String name, ThreadPoolExecutor executor) {
+            this.name = name;
+            this.executor = executor;
+        }
+
+        String describe() {
+            return name + ": " + executor.getActiveCount() + " active, " + executor.getQueue().size() + " queued";
+        }
+    }
+
+    /**
+     * Delegating executor that counts in-flight and completed tasks, which virtual-thread
+     * executors do not expose.
+     */
+    private static final class TrackedExecutor extends AbstractExecutorService {
+        private final String name;
+        private final ExecutorService delegate;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+
+        TrackedExecutor(String name, ExecutorService delegate) {
+            this.name = name;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            inFlight.incrementAndGet();
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        inFlight.decrementAndGet();
+                        completed.incrementAndGet();
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.decrementAndGet();
+                throw e;
+            }
+        }
+
+        String describe() {
+            return name + ": " + inFlight.get() + " in flight, " + completed.get() + " done";
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
     }
 }
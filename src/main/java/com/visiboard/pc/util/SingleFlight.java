@@ -0,0 +1,154 @@
+package com.visiboard.pc.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent requests: while a request for a key is in flight, later
+ * callers for the same key wait for it and share its result instead of issuing their own.
+ *
+ * Nothing is cached; once the request completes the next caller starts a fresh one. Callers
+ * receive the same result instance and must treat it as read-only. Keys must have value
+ * semantics, e.g. {@code Arrays.asList("getNoteById", id)}.
+ */
+public final class SingleFlight {
+
+    private final String name;
+    private final ConcurrentHashMap<Object, CompletableFuture<Object>> blocking = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Object, Flight> async = new ConcurrentHashMap<>();
+    private final AtomicLong shared = new AtomicLong();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs {@code load} on the calling thread, or waits for the identical load already running.
+     * If the leading load belongs to a cancelled {@link TaskScope} task, its (possibly truncated)
+     * result is not shared and the waiters load again.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(Object key, Supplier<V> load) {
+        while (true) {
+            CompletableFuture<Object> mine = new CompletableFuture<>();
+            CompletableFuture<Object> leader = blocking.putIfAbsent(key, mine);
+            if (leader == null) {
+                try {
+                    V value = load.get();
+                    if (TaskScope.isCancelled()) {
+                        mine.cancel(false);
+                    } else {
+                        mine.complete(value);
+                    }
+                    return value;
+                } catch (RuntimeException | Error e) {
+                    mine.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    blocking.remove(key, mine);
+                }
+            }
+
+            shared.incrementAndGet();
+            try {
+                return (V) leader.join();
+            } catch (CancellationException e) {
+                // The leader's result was discarded; try again, possibly as the leader
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Starts {@code call}, or joins the identical call already in flight. Each caller gets its
+     * own future, so cancelling one does not affect the others; the underlying call is cancelled
+     * only when every caller has cancelled.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> execute(Object key, Supplier<CompletableFuture<V>> call) {
+        while (true) {
+            Flight flight = async.get(key);
+            if (flight == null) {
+                Flight mine = new Flight();
+                flight = async.putIfAbsent(key, mine);
+                if (flight == null) {
+                    mine.start(key, (Supplier<CompletableFuture<Object>>) (Supplier<?>) call);
+                    return (CompletableFuture<V>) mine.join();
+                }
+            }
+            CompletableFuture<Object> follower = flight.join();
+            if (follower != null) {
+                shared.incrementAndGet();
+                return (CompletableFuture<V>) follower;
+            }
+            // Every caller of that flight had cancelled; it is on its way out
+            async.remove(key, flight);
+        }
+    }
+
+    /**
+     * Number of requests that were served by another caller's request.
+     */
+    public long getSharedCount() {
+        return shared.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + shared.get() + " shared, " + (blocking.size() + async.size()) + " in flight";
+    }
+
+    private final class Flight {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final AtomicInteger callers = new AtomicInteger();
+        private volatile CompletableFuture<Object> source;
+
+        void start(Object key, Supplier<CompletableFuture<Object>> call) {
+            try {
+                source = call.get();
+            } catch (RuntimeException e) {
+                source = CompletableFuture.failedFuture(e);
+            }
+            source.whenComplete((value, error) -> {
+                async.remove(key, this);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+
+        // A future for one more caller, or null if the flight was already abandoned
+        CompletableFuture<Object> join() {
+            int count;
+            do {
+                count = callers.get();
+                if (count < 0) return null;
+            } while (!callers.compareAndSet(count, count + 1));
+
+            CompletableFuture<Object> mine = new CompletableFuture<>();
+            result.whenComplete((value, error) -> {
+                if (error != null) {
+                    mine.completeExceptionally(error);
+                } else {
+                    mine.complete(value);
+                }
+            });
+            mine.whenComplete((value, error) -> {
+                if (mine.isCancelled() && callers.decrementAndGet() == 0 && callers.compareAndSet(0, -1)) {
+                    CompletableFuture<Object> s = source;
+                    if (s != null) s.cancel(true);
+                }
+            });
+            return mine;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.visiboard.pc.util;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Background work owned by one view, cancelled when the view goes away.
+ *
+ * A view runs its loads through {@link #run}; the result is handed to the view on the FX thread
+ * only if the task is still live. {@link #cancelAll()} (view hidden) and {@link #close()} (view
+ * disposed) cancel every outstanding task: queued work never starts, running JDBC statements
+ * registered with {@link #onCancel} are cancelled on the server, tracked HTTP futures are
+ * aborted, and late results are dropped instead of being applied to a dead view. Loads that
+ * share a key supersede each other, so only the latest refresh of a list is ever in flight.
+ */
+public final class TaskScope {
+
+    /**
+     * Handle for a cancel hook; closing it removes the hook once the guarded call has returned.
+     */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Registration NO_REGISTRATION = () -> { };
+    private static final ThreadLocal<Task> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final Set<Task> tasks = ConcurrentHashMap.newKeySet();
+    private final Map<Object, Task> latestByKey = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public TaskScope(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs {@code work} on {@link ConcurrencyManager#io()} and passes its result to
+     * {@code onResult} on the FX thread, unless the task is cancelled first. A non-null
+     * {@code key} cancels the previous task with the same key. The returned future completes
+     * after {@code onResult} has run, or is cancelled along with the task.
+     */
+    public <T> CompletableFuture<T> run(Object key, Callable<T> work, Consumer<T> onResult) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Task task = new Task(key, result);
+        if (closed) {
+            result.cancel(false);
+            return result;
+        }
+        tasks.add(task);
+        if (key != null) {
+            Task previous = latestByKey.put(key, task);
+            if (previous != null) previous.cancel();
+        }
+
+        task.setFuture(ConcurrencyManager.io().submit(() -> {
+            if (task.cancelled) return;
+            CURRENT.set(task);
+            try {
+                T value = work.call();
+                Platform.runLater(() -> {
+                    if (task.cancelled) return;
+                    finish(task);
+                    if (onResult != null) onResult.accept(value);
+                    result.complete(value);
+                });
+            } catch (Exception e) {
+                if (!task.cancelled) {
+                    finish(task);
+                    System.err.println("[" + name + "] Background task failed: " + e.getMessage());
+                    result.completeExceptionally(e);
+                }
+            } finally {
+                CURRENT.remove();
+            }
+        }));
+        return result;
+    }
+
+    /**
+     * Cancels {@code future} (e.g. an HTTP call) together with this scope's tasks.
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        if (closed) {
+            future.cancel(true);
+            return future;
+        }
+        Task task = new Task(null, future);
+        tasks.add(task);
+        future.whenComplete((value, error) -> finish(task));
+        return future;
+    }
+
+    /**
+     * Cancels everything in flight; the scope stays usable (e.g. the view was hidden, not destroyed).
+     */
+    public void cancelAll() {
+        for (Task task : tasks) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Cancels everything in flight and anything submitted later.
+     */
+    public void close() {
+        closed = true;
+        cancelAll();
+    }
+
+    /**
+     * Closes this scope when the window showing {@code node} is hidden (e.g. a detail window is
+     * closed). Call on the FX thread; works before the node is attached to a window.
+     */
+    public TaskScope closeWhenHidden(Node node) {
+        node.sceneProperty().addListener((obs, oldScene, scene) -> {
+            if (scene != null) {
+                scene.windowProperty().addListener((wObs, oldWindow, window) -> closeOnHidden(window));
+                closeOnHidden(scene.getWindow());
+            }
+        });
+        if (node.getScene() != null) {
+            node.getScene().windowProperty().addListener((obs, oldWindow, window) -> closeOnHidden(window));
+            closeOnHidden(node.getScene().getWindow());
+        }
+        return this;
+    }
+
+    private void closeOnHidden(Window window) {
+        if (window != null) {
+            window.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> close());
+        }
+    }
+
+    /**
+     * Registers {@code hook} (e.g. {@code statement::cancel}) to run if the task executing on this
+     * thread is cancelled. Outside a scoped task this is a no-op.
+     */
+    public static Registration onCancel(Runnable hook) {
+        Task task = CURRENT.get();
+        if (task == null) return NO_REGISTRATION;
+        task.hooks.add(hook);
+        if (task.cancelled) {
+            // Cancelled while the hook was being registered
+            task.runHook(hook);
+        }
+        return () -> task.hooks.remove(hook);
+    }
+
+    /**
+     * True if the task executing on this thread has been cancelled; lets blocking code stop early
+     * and skip error logging for failures it caused itself.
+     */
+    public static boolean isCancelled() {
+        Task task = CURRENT.get();
+        return task != null && task.cancelled;
+    }
+
+    private void finish(Task task) {
+        tasks.remove(task);
+        if (task.key != null) latestByKey.remove(task.key, task);
+    }
+
+    private final class Task {
+        final Object key;
+        final CompletableFuture<?> result;
+        final List<Runnable> hooks = new CopyOnWriteArrayList<>();
+        volatile boolean cancelled;
+        volatile Future<?> future;
+
+        Task(Object key, CompletableFuture<?> result) {
+            this.key = key;
+            this.result = result;
+        }
+
+        void setFuture(Future<?> future) {
+            this.future = future;
+            if (cancelled) future.cancel(false);
+        }
+
+        void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            finish(this);
+            // No interrupt: it would close a virtual thread's JDBC socket. Running statements are
+            // stopped through their hooks instead.
+            Future<?> f = future;
+            if (f != null) f.cancel(false);
+            for (Runnable hook : hooks) {
+                runHook(hook);
+            }
+            result.cancel(true);
+        }
+
+        void runHook(Runnable hook) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                System.err.println("[" + name + "] Cancel hook failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+-- Baseline: the schema DatabaseService.initializeDatabase() used to recreate on every launch.
+-- IF NOT EXISTS keeps it safe on databases created from an older schema.sql; V2 fills in their missing columns.
+
+CREATE TABLE IF NOT EXISTS users (
+    user_id VARCHAR(255) PRIMARY KEY,
+    username VARCHAR(255),
+    email VARCHAR(255),
+    display_name VARCHAR(255),
+    photo_url TEXT,
+    is_banned BOOLEAN DEFAULT FALSE,
+    ban_expiry BIGINT,
+    is_restricted BOOLEAN DEFAULT FALSE,
+    restriction_expiry BIGINT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    synced_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    total_likes_received INT DEFAULT 0,
+    followers_count INT DEFAULT 0,
+    following_count INT DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS notes (
+    note_id VARCHAR(255) PRIMARY KEY,
+    user_id VARCHAR(255) REFERENCES users(user_id),
+    content TEXT,
+    image_url TEXT,
+    latitude DOUBLE PRECISION,
+    longitude DOUBLE PRECISION,
+    likes_count INT DEFAULT 0,
+    is_hidden BOOLEAN DEFAULT FALSE,
+    created_at TIMESTAMP,
+    liked_by_users TEXT[],
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    synced_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS reports (
+    report_id VARCHAR(255) PRIMARY KEY,
+    reporter_id VARCHAR(255),
+    reported_user_id VARCHAR(255),
+    reported_note_id VARCHAR(255),
+    category VARCHAR(100),
+    description TEXT,
+    reason TEXT,
+    target_details TEXT,
+    type VARCHAR(50),
+    timestamp BIGINT,
+    status VARCHAR(50) DEFAULT 'PENDING',
+    synced_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS notifications (
+    notification_id VARCHAR(255) PRIMARY KEY,
+    user_id VARCHAR(255),
+    message TEXT,
+    type VARCHAR(50),
+    is_read BOOLEAN DEFAULT FALSE,
+    created_at BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS sync_state (
+    collection VARCHAR(100) PRIMARY KEY,
+    high_water_mark BIGINT DEFAULT 0,
+    is_timestamp BOOLEAN DEFAULT TRUE,
+    last_synced_at TIMESTAMP,
+    last_full_sync_at TIMESTAMP
+);
@@ -0,0 +1,19 @@
+-- Databases created from the old schema.sql lack columns the app reads and writes.
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS total_likes_received INT DEFAULT 0;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS followers_count INT DEFAULT 0;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS following_count INT DEFAULT 0;
+
+ALTER TABLE reports ADD COLUMN IF NOT EXISTS category VARCHAR(100);
+ALTER TABLE reports ADD COLUMN IF NOT EXISTS description TEXT;
+
+-- schema.sql stored the notification time as "timestamp"; the app uses created_at
+ALTER TABLE notifications ADD COLUMN IF NOT EXISTS created_at BIGINT;
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = 'notifications' AND column_name = 'timestamp') THEN
+        EXECUTE 'UPDATE notifications SET created_at = "timestamp" WHERE created_at IS NULL';
+    END IF;
+END
+$$;
@@ -0,0 +1,19 @@
+-- Indexes for the admin read paths; QueryPlanTest checks that the planner uses them.
+
+-- getNotesByUserId: WHERE user_id = ? ORDER BY created_at DESC
+CREATE INDEX IF NOT EXISTS idx_notes_user_created ON notes (user_id, created_at DESC);
+
+-- getAllNotes: ORDER BY created_at DESC
+CREATE INDEX IF NOT EXISTS idx_notes_created ON notes (created_at DESC);
+
+-- getAllUsers: ORDER BY created_at DESC
+CREATE INDEX IF NOT EXISTS idx_users_created ON users (created_at DESC);
+
+-- getAllReports: ORDER BY r.timestamp DESC
+CREATE INDEX IF NOT EXISTS idx_reports_timestamp ON reports (timestamp DESC);
+
+-- Reports filed against a note (note deletion / report grouping)
+CREATE INDEX IF NOT EXISTS idx_reports_reported_note ON reports (reported_note_id);
+
+-- Per-user notification history, newest first
+CREATE INDEX IF NOT EXISTS idx_notifications_user_created ON notifications (user_id, created_at);
@@ -0,0 +1,12 @@
+-- Keyset paging orders by (sort key, id) so ties never repeat or skip rows across pages.
+-- These indexes serve both the first page and every "after cursor" page; they replace
+-- the single-column sort indexes from V3.
+
+CREATE INDEX IF NOT EXISTS idx_users_created_id ON users (created_at DESC, user_id DESC);
+DROP INDEX IF EXISTS idx_users_created;
+
+CREATE INDEX IF NOT EXISTS idx_notes_created_id ON notes (created_at DESC, note_id DESC);
+DROP INDEX IF EXISTS idx_notes_created;
+
+CREATE INDEX IF NOT EXISTS idx_reports_timestamp_id ON reports (timestamp DESC, report_id DESC);
+DROP INDEX IF EXISTS idx_reports_timestamp;
@@ -0,0 +1,155 @@
+-- Per-day dashboard rollup, one row per (day, metric):
+--   users_joined / notes_created  rows per creation day, net of deletions (their SUM is the table size)
+--   likes                         likes on new notes by creation day, later like changes on the day they sync
+--   reports_filed                 reports by filing day (never decremented)
+--   reports_resolved              reports leaving PENDING (status change or deletion) by the day it happened
+-- Maintained by statement-level triggers, so sync upserts, the COPY merge, live-sync deletes and
+-- moderation deletes all update it in their own transaction. One row per metric keeps concurrent
+-- writers of different tables off each other's rows.
+
+CREATE TABLE IF NOT EXISTS daily_stats (
+    day DATE NOT NULL,
+    metric VARCHAR(32) NOT NULL,
+    value BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, metric)
+);
+
+CREATE OR REPLACE FUNCTION daily_stats_on_users() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO daily_stats (day, metric, value)
+        SELECT created_at::date, 'users_joined', COUNT(*) FROM new_rows
+        WHERE created_at IS NOT NULL GROUP BY 1 ORDER BY 1
+        ON CONFLICT (day, metric) DO UPDATE SET value = daily_stats.value + EXCLUDED.value;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO daily_stats (day, metric, value)
+        SELECT created_at::date, 'users_joined', -COUNT(*) FROM old_rows
+        WHERE created_at IS NOT NULL GROUP BY 1 ORDER BY 1
+        ON CONFLICT (day, metric) DO UPDATE SET value = daily_stats.value + EXCLUDED.value;
+    ELSE
+        INSERT INTO daily_stats (day, metric, value)
+        SELECT day, 'users_joined', SUM(delta) FROM (
+            SELECT created_at::date AS day, 1 AS delta FROM new_rows WHERE created_at IS NOT NULL
+            UNION ALL
+            SELECT created_at::date, -1 FROM old_rows WHERE created_at IS NOT NULL
+        ) d GROUP BY day HAVING SUM(delta) <> 0 ORDER BY day
+        ON CONFLICT (day, metric) DO UPDATE SET value = daily_stats.value + EXCLUDED.value;
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION daily_stats_on_notes() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO daily_stats (day, metric, value)
+        SELECT day, metric, value FROM (
+            SELECT created_at::date AS day, 'notes_created' AS metric, COUNT(*) AS value FROM new_rows
+            WHERE created_at IS NOT NULL GROUP BY 1
+            UNION ALL
+            SELECT created_at::date, 'likes', SUM(COALESCE(likes_count, 0)) FROM new_rows
+            WHERE created_at IS NOT NULL GROUP BY 1
+        ) d WHERE value <> 0 ORDER BY day, metric
+        ON CONFLICT (day, metric) DO UPDATE SET value = daily_stats.value + EXCLUDED.value;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO daily_stats (day, metric, value)
+        SELECT day, metric, value FROM (
+            SELECT created_at::date AS day, 'notes_created' AS metric, -COUNT(*) AS value FROM old_rows
+            WHERE created_at IS NOT NULL GROUP BY 1
+            UNION ALL
+            SELECT created_at::date, 'likes', -SUM(COALESCE(likes_count, 0)) FROM old_rows
+            WHERE created_at IS NOT NULL GROUP BY 1
+        ) d WHERE value <> 0 ORDER BY day, metric
+        ON CONFLICT (day, metric) DO UPDATE SET value = daily_stats.value + EXCLUDED.value;
+    ELSE
+        INSERT INTO daily_stats (day, metric, value)
+        SELECT day, metric, SUM(delta) FROM (
+            SELECT created_at::date AS day, 'notes_created' AS metric, 1 AS delta FROM new_rows WHERE created_at IS NOT NULL
+            UNION ALL
+            SELECT created_at::date, 'notes_created', -1 FROM old_rows WHERE created_at IS NOT NULL
+            UNION ALL
+            SELECT CURRENT_DATE, 'likes', COALESCE(n.likes_count, 0) - COALESCE(o.likes_count, 0)
+            FROM new_rows n JOIN old_rows o ON o.note_id = n.note_id
+        ) d GROUP BY day, metric HAVING SUM(delta) <> 0 ORDER BY day, metric
+        ON CONFLICT (day, metric) DO UPDATE SET value = daily_stats.value + EXCLUDED.value;
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION daily_stats_on_reports() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO daily_stats (day, metric, value)
+        SELECT day, metric, SUM(delta) FROM (
+            SELECT COALESCE(to_timestamp(timestamp / 1000.0)::date, CURRENT_DATE) AS day, 'reports_filed' AS metric, 1 AS delta FROM new_rows
+            UNION ALL
+            SELECT CURRENT_DATE, 'reports_resolved', 1 FROM new_rows WHERE COALESCE(status, 'PENDING') <> 'PENDING'
+        ) d GROUP BY day, metric ORDER BY day, metric
+        ON CONFLICT (day, metric) DO UPDATE SET value = daily_stats.value + EXCLUDED.value;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO daily_stats (day, metric, value)
+        SELECT CURRENT_DATE, 'reports_resolved', COUNT(*) FROM old_rows
+        WHERE COALESCE(status, 'PENDING') = 'PENDING' HAVING COUNT(*) > 0
+        ON CONFLICT (day, metric) DO UPDATE SET value = daily_stats.value + EXCLUDED.value;
+    ELSE
+        INSERT INTO daily_stats (day, metric, value)
+        SELECT CURRENT_DATE, 'reports_resolved', SUM(
+            CASE WHEN COALESCE(o.status, 'PENDING') = 'PENDING' AND COALESCE(n.status, 'PENDING') <> 'PENDING' THEN 1
+                 WHEN COALESCE(o.status, 'PENDING') <> 'PENDING' AND COALESCE(n.status, 'PENDING') = 'PENDING' THEN -1
+                 ELSE 0 END)
+        FROM new_rows n JOIN old_rows o ON o.report_id = n.report_id
+        HAVING SUM(CASE WHEN COALESCE(o.status, 'PENDING') = 'PENDING' AND COALESCE(n.status, 'PENDING') <> 'PENDING' THEN 1
+                        WHEN COALESCE(o.status, 'PENDING') <> 'PENDING' AND COALESCE(n.status, 'PENDING') = 'PENDING' THEN -1
+                        ELSE 0 END) <> 0
+        ON CONFLICT (day, metric) DO UPDATE SET value = daily_stats.value + EXCLUDED.value;
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+-- Transition tables allow one event per trigger, hence three triggers per table
+DROP TRIGGER IF EXISTS daily_stats_users_insert ON users;
+CREATE TRIGGER daily_stats_users_insert AFTER INSERT ON users
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE daily_stats_on_users();
+DROP TRIGGER IF EXISTS daily_stats_users_update ON users;
+CREATE TRIGGER daily_stats_users_update AFTER UPDATE ON users
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE daily_stats_on_users();
+DROP TRIGGER IF EXISTS daily_stats_users_delete ON users;
+CREATE TRIGGER daily_stats_users_delete AFTER DELETE ON users
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE PROCEDURE daily_stats_on_users();
+
+DROP TRIGGER IF EXISTS daily_stats_notes_insert ON notes;
+CREATE TRIGGER daily_stats_notes_insert AFTER INSERT ON notes
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE daily_stats_on_notes();
+DROP TRIGGER IF EXISTS daily_stats_notes_update ON notes;
+CREATE TRIGGER daily_stats_notes_update AFTER UPDATE ON notes
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE daily_stats_on_notes();
+DROP TRIGGER IF EXISTS daily_stats_notes_delete ON notes;
+CREATE TRIGGER daily_stats_notes_delete AFTER DELETE ON notes
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE PROCEDURE daily_stats_on_notes();
+
+DROP TRIGGER IF EXISTS daily_stats_reports_insert ON reports;
+CREATE TRIGGER daily_stats_reports_insert AFTER INSERT ON reports
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE daily_stats_on_reports();
+DROP TRIGGER IF EXISTS daily_stats_reports_update ON reports;
+CREATE TRIGGER daily_stats_reports_update AFTER UPDATE ON reports
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE daily_stats_on_reports();
+DROP TRIGGER IF EXISTS daily_stats_reports_delete ON reports;
+CREATE TRIGGER daily_stats_reports_delete AFTER DELETE ON reports
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE PROCEDURE daily_stats_on_reports();
+
+-- Backfill from whatever is already synced
+DELETE FROM daily_stats;
+INSERT INTO daily_stats (day, metric, value)
+SELECT day, metric, value FROM (
+    SELECT created_at::date AS day, 'users_joined' AS metric, COUNT(*) AS value FROM users WHERE created_at IS NOT NULL GROUP BY 1
+    UNION ALL
+    SELECT created_at::date, 'notes_created', COUNT(*) FROM notes WHERE created_at IS NOT NULL GROUP BY 1
+    UNION ALL
+    SELECT created_at::date, 'likes', SUM(COALESCE(likes_count, 0)) FROM notes WHERE created_at IS NOT NULL GROUP BY 1
+    UNION ALL
+    SELECT COALESCE(to_timestamp(timestamp / 1000.0)::date, CURRENT_DATE), 'reports_filed', COUNT(*) FROM reports GROUP BY 1
+    UNION ALL
+    SELECT CURRENT_DATE, 'reports_resolved', COUNT(*) FROM reports WHERE COALESCE(status, 'PENDING') <> 'PENDING'
+) d WHERE value <> 0;
@@ -0,0 +1,22 @@
+-- Firestore writes that still have to be sent. Each row is inserted in the same transaction as
+-- the local change it mirrors and deleted once Firestore has accepted it; OutboxDispatcher
+-- drains the table oldest first. Every write targets a fixed document id (notifications use
+-- their local notification_id), so sending a row twice leaves Firestore unchanged.
+CREATE TABLE IF NOT EXISTS firestore_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    collection VARCHAR(100) NOT NULL,
+    document_id VARCHAR(255) NOT NULL,
+    operation VARCHAR(10) NOT NULL CHECK (operation IN ('SET', 'UPDATE', 'DELETE')),
+    payload JSONB,
+    created_at BIGINT NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    -- Epoch millis. While a row is in flight this is also the dispatcher's lease
+    next_attempt_at BIGINT NOT NULL,
+    last_error TEXT
+);
+
+-- Dispatcher poll: WHERE next_attempt_at <= now ORDER BY id
+CREATE INDEX IF NOT EXISTS idx_firestore_outbox_due ON firestore_outbox (next_attempt_at, id);
+
+-- Per-document ordering check: is there an older row for the same document?
+CREATE INDEX IF NOT EXISTS idx_firestore_outbox_document ON firestore_outbox (collection, document_id, id);
@@ -0,0 +1,14 @@
+-- Outbox rows Firestore will never accept (the document is gone, the payload is invalid, or the
+-- retry limit ran out) are parked instead of retried forever. A dead-lettered row keeps its
+-- payload and last_error for inspection; the dispatcher no longer claims it, and later writes
+-- to the same document no longer wait behind it.
+ALTER TABLE firestore_outbox ADD COLUMN IF NOT EXISTS dead_lettered_at BIGINT;
+
+-- The poll and the ordering check only ever look at live rows
+CREATE INDEX IF NOT EXISTS idx_firestore_outbox_live_due ON firestore_outbox (next_attempt_at, id)
+    WHERE dead_lettered_at IS NULL;
+DROP INDEX IF EXISTS idx_firestore_outbox_due;
+
+CREATE INDEX IF NOT EXISTS idx_firestore_outbox_live_document ON firestore_outbox (collection, document_id, id)
+    WHERE dead_lettered_at IS NULL;
+DROP INDEX IF EXISTS idx_firestore_outbox_document;
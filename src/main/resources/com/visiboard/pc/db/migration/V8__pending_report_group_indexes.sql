@@ -0,0 +1,8 @@
+-- Grouped moderation queue: only pending reports are grouped, by target. These indexes hand
+-- the aggregate each target's pending reports already in group order, so it never sorts or
+-- reads resolved reports.
+CREATE INDEX IF NOT EXISTS idx_reports_pending_note ON reports (reported_note_id, timestamp)
+    WHERE status = 'PENDING' AND reported_note_id IS NOT NULL AND reported_note_id <> '';
+
+CREATE INDEX IF NOT EXISTS idx_reports_pending_user ON reports (reported_user_id, timestamp)
+    WHERE status = 'PENDING' AND (reported_note_id IS NULL OR reported_note_id = '');
@@ -0,0 +1,213 @@
+package com.visiboard.pc.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the admin read paths are served by indexes.
+ *
+ * Builds the migrated schema in a throwaway PostgreSQL schema, loads a large synthetic
+ * fixture, and runs EXPLAIN on the SQL the services actually execute (their query constants
+ * and page builders, never a hand-written copy). A sequential scan on users, notes or reports
+ * fails the test unless the check declares that table as a full read.
+ *
+ * Runs only against a dedicated test database, never the application's pool:
+ * {@code gradle test -Dvisiboard.test.db.url=jdbc:postgresql://localhost:5432/visiboard_test
+ * -Dvisiboard.test.db.user=... -Dvisiboard.test.db.password=...}. Without a reachable test
+ * database the test is skipped.
+ *
+ * Declared full reads, each for a reason the query cannot avoid:
+ * <ul>
+ *   <li>getAllUsers / getAllNotes / getAllReports return every row; a sequential scan (plus
+ *       hash joins for the report names) is the right plan, and the admin lists use the keyset
+ *       page queries instead.</li>
+ *   <li>The user search is a substring match ({@code ILIKE '%term%'}) that no btree index can
+ *       serve. A pg_trgm index could, but installing the extension needs rights the app's
+ *       database user is not guaranteed to have, and a failed migration would stop startup.
+ *       The page query stops after one page of matches.</li>
+ *   <li>A report group's place in the queue depends on all of its pending reports, so a group
+ *       page aggregates every pending report of that kind; the scan is bounded by the pending
+ *       backlog, not by history.</li>
+ * </ul>
+ * The dashboard queries read only the daily_stats rollup (one row per day and metric), so
+ * they must not touch the source tables at all.
+ */
+class QueryPlanTest {
+
+    private static final String TEST_DB_URL = System.getProperty("visiboard.test.db.url");
+    private static final String TEST_DB_USER = System.getProperty("visiboard.test.db.user", "postgres");
+    private static final String TEST_DB_PASSWORD = System.getProperty("visiboard.test.db.password", "");
+
+    private static final int FIXTURE_USERS = Integer.getInteger("visiboard.planCheck.users", 20_000);
+    private static final int FIXTURE_NOTES = Integer.getInteger("visiboard.planCheck.notes", 200_000);
+    private static final int FIXTURE_REPORTS = Integer.getInteger("visiboard.planCheck.reports", 50_000);
+    private static final int PAGE_LIMIT = 50;
+
+    private static final Set<String> FIXTURE_TABLES = new HashSet<>(Arrays.asList("users", "notes", "reports"));
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    private static final class Check {
+        final String name;
+        final String sql;
+        final Object[] params;
+        final Set<String> fullReads = new HashSet<>();
+
+        Check(String name, String sql, Object... params) {
+            this.name = name;
+            this.sql = sql;
+            this.params = params;
+        }
+
+        // Tables this query reads in full by design (see the class comment)
+        Check fullRead(String... tables) {
+            fullReads.addAll(Arrays.asList(tables));
+            return this;
+        }
+    }
+
+    @Test
+    void adminReadPathsUseIndexes() throws SQLException {
+        String[] userIds = {"u42", "u4242", "u9999"};
+        String[] reportIds = {"r42", "r4242", "r9999"};
+        Timestamp cursorTime = new Timestamp(System.currentTimeMillis() - 86_400_000L);
+        long cursorMillis = System.currentTimeMillis() - 3_600_000L;
+        String search = "%user42%";
+
+        List<Check> checks = new ArrayList<>();
+        checks.add(new Check("getNoteById", DatabaseService.NOTE_BY_ID_QUERY, "n42"));
+        checks.add(new Check("getUserById", DatabaseService.USER_BY_ID_QUERY, "u42"));
+        checks.add(new Check("getNotesByUserId", DatabaseService.NOTES_BY_USER_QUERY, "u42"));
+        checks.add(new Check("getUsersByIds", DatabaseService.USERS_BY_IDS_QUERY, (Object) userIds));
+        checks.add(new Check("getUserSanctionCounts", DatabaseService.USER_SANCTIONS_QUERY, (Object) userIds));
+        checks.add(new Check("getReportsByIds", DatabaseService.REPORTS_BY_IDS_QUERY, (Object) reportIds));
+        checks.add(new Check("getAllUsers", DatabaseService.ALL_USERS_QUERY).fullRead("users"));
+        checks.add(new Check("getAllNotes", DatabaseService.ALL_NOTES_QUERY).fullRead("notes"));
+        checks.add(new Check("getAllReports", DatabaseService.ALL_REPORTS_QUERY).fullRead("reports", "users", "notes"));
+
+        checks.add(new Check("getUsersPage (first)", DatabaseService.usersPageSql(false, "All", false), PAGE_LIMIT + 1));
+        checks.add(new Check("getUsersPage (after cursor)", DatabaseService.usersPageSql(false, "All", true), cursorTime, "u999", PAGE_LIMIT + 1));
+        checks.add(new Check("getUsersPage (search)", DatabaseService.usersPageSql(true, "All", false), search, search, PAGE_LIMIT + 1).fullRead("users"));
+        checks.add(new Check("getUsersPage (search, after cursor)", DatabaseService.usersPageSql(true, "All", true),
+                search, search, cursorTime, "u999", PAGE_LIMIT + 1).fullRead("users"));
+        checks.add(new Check("getNotesPage (first)", DatabaseService.notesPageSql(false), PAGE_LIMIT + 1));
+        checks.add(new Check("getNotesPage (after cursor)", DatabaseService.notesPageSql(true), cursorTime, "n999", PAGE_LIMIT + 1));
+        checks.add(new Check("getReportsPage notes (after cursor)", DatabaseService.reportsPageSql(true, true), cursorMillis, "r999", PAGE_LIMIT + 1));
+        checks.add(new Check("getReportsPage users (after cursor)", DatabaseService.reportsPageSql(false, true), cursorMillis, "r999", PAGE_LIMIT + 1));
+        checks.add(new Check("getReportGroupsPage notes (first)", DatabaseService.reportGroupsPageSql(true, false), PAGE_LIMIT + 1).fullRead("reports"));
+        checks.add(new Check("getReportGroupsPage notes (after cursor)", DatabaseService.reportGroupsPageSql(true, true),
+                cursorMillis, "n999", PAGE_LIMIT + 1).fullRead("reports"));
+        checks.add(new Check("getReportGroupsPage users (first)", DatabaseService.reportGroupsPageSql(false, false), PAGE_LIMIT + 1).fullRead("reports"));
+        checks.add(new Check("getReportGroupsPage users (after cursor)", DatabaseService.reportGroupsPageSql(false, true),
+                cursorMillis, "u999", PAGE_LIMIT + 1).fullRead("reports"));
+        checks.add(new Check("applyToGroup note", ModerationService.RESOLVE_NOTE_GROUP_SQL, "n42"));
+        checks.add(new Check("applyToGroup user", ModerationService.RESOLVE_USER_GROUP_SQL, "u42"));
+        checks.add(new Check("getDashboardStats totals", DatabaseService.STATS_TOTALS_QUERY));
+        checks.add(new Check("getDashboardStats window", DatabaseService.STATS_WINDOW_QUERY,
+                java.sql.Date.valueOf(LocalDate.now().minusDays(29))));
+
+        Connection testDb = openTestDatabase();
+        assumeTrue(testDb != null, "No test database reachable (set -Dvisiboard.test.db.url)");
+
+        String schema = "visiboard_plan_check_" + ProcessHandle.current().pid();
+        List<String> seqScans = new ArrayList<>();
+
+        try (Connection conn = testDb;
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE SCHEMA " + schema);
+            try {
+                stmt.execute("SET search_path TO " + schema);
+                SchemaMigrator.migrate(conn);
+                loadFixture(stmt);
+
+                for (Check check : checks) {
+                    String plan = explain(conn, check);
+                    Set<String> scanned = new TreeSet<>();
+                    Matcher m = SEQ_SCAN.matcher(plan);
+                    while (m.find()) {
+                        if (FIXTURE_TABLES.contains(m.group(1)) && !check.fullReads.contains(m.group(1))) scanned.add(m.group(1));
+                    }
+                    boolean seqScan = !scanned.isEmpty();
+                    if (seqScan) seqScans.add(check.name + " " + scanned);
+                    System.out.println((seqScan ? "[FAIL] " : "[ OK ] ") + check.name);
+                    System.out.println(plan.replaceAll("(?m)^", "         "));
+                }
+            } finally {
+                stmt.execute("SET search_path TO DEFAULT");
+                stmt.execute("DROP SCHEMA " + schema + " CASCADE");
+            }
+        }
+
+        assertTrue(seqScans.isEmpty(), seqScans.size() + " of " + checks.size() +
+                   " read paths fall back to a sequential scan: " + seqScans);
+    }
+
+    // Null when no test database is configured or it cannot be reached
+    private static Connection openTestDatabase() {
+        if (TEST_DB_URL == null || TEST_DB_URL.isBlank()) return null;
+        try {
+            return DriverManager.getConnection(TEST_DB_URL, TEST_DB_USER, TEST_DB_PASSWORD);
+        } catch (SQLException e) {
+            System.err.println("Query plan test skipped, " + TEST_DB_URL + " is not reachable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void loadFixture(Statement stmt) throws SQLException {
+        long start = System.currentTimeMillis();
+        stmt.execute("INSERT INTO users (user_id, username, email, display_name, created_at) " +
+                     "SELECT 'u' || g, 'user' || g, 'user' || g || '@example.com', 'User ' || g, " +
+                     "now() - g * interval '1 minute' FROM generate_series(1, " + FIXTURE_USERS + ") g");
+        stmt.execute("INSERT INTO notes (note_id, user_id, content, latitude, longitude, created_at) " +
+                     "SELECT 'n' || g, 'u' || (1 + g % " + FIXTURE_USERS + "), 'Note ' || g, 0, 0, " +
+                     "now() - g * interval '1 second' FROM generate_series(1, " + FIXTURE_NOTES + ") g");
+        stmt.execute("INSERT INTO reports (report_id, reporter_id, reported_user_id, reported_note_id, type, timestamp, status) " +
+                     "SELECT 'r' || g, 'u' || (1 + g % " + FIXTURE_USERS + "), " +
+                     "CASE WHEN g % 2 = 0 THEN 'u' || (1 + (g * 7) % " + FIXTURE_USERS + ") END, " +
+                     "CASE WHEN g % 2 = 1 THEN 'n' || (1 + (g * 13) % " + FIXTURE_NOTES + ") END, " +
+                     "CASE WHEN g % 2 = 1 THEN 'NOTE' ELSE 'USER' END, " +
+                     "(extract(epoch FROM now()) * 1000)::bigint - g * 1000, " +
+                     "CASE WHEN g % 10 = 0 THEN 'RESOLVED' ELSE 'PENDING' END " +
+                     "FROM generate_series(1, " + FIXTURE_REPORTS + ") g");
+        stmt.execute("ANALYZE");
+        System.out.println("Loaded plan-check fixture in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private static String explain(Connection conn, Check check) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + check.sql)) {
+            for (int i = 0; i < check.params.length; i++) {
+                Object param = check.params[i];
+                if (param instanceof String[]) {
+                    pstmt.setArray(i + 1, conn.createArrayOf("text", (String[]) param));
+                } else {
+                    pstmt.setObject(i + 1, param);
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString().stripTrailing();
+    }
+}
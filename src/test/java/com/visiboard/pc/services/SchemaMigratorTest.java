@@ -0,0 +1,111 @@
+package com.visiboard.pc.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SchemaMigratorTest {
+
+    private static final Set<String> STATEMENT_KEYWORDS = Set.of(
+            "CREATE", "ALTER", "DROP", "INSERT", "UPDATE", "DELETE", "SELECT", "DO", "COMMENT", "WITH");
+
+    @Test
+    void everyBundledScriptSplitsIntoWellFormedStatements() throws SQLException {
+        for (String script : SchemaMigrator.scripts()) {
+            List<String> statements = SchemaMigrator.splitStatements(SchemaMigrator.readScript(script));
+            assertFalse(statements.isEmpty(), script + " has no statements");
+            for (String sql : statements) {
+                String firstWord = sql.split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+                assertTrue(STATEMENT_KEYWORDS.contains(firstWord), script + ": statement starts with '" + firstWord + "': " + sql);
+                assertEquals(0, parenthesisDepth(sql), script + ": unbalanced parentheses in: " + sql);
+                assertEquals(0, countOutsideDollarBodies(sql, '\'') % 2, script + ": unbalanced quotes in: " + sql);
+            }
+        }
+    }
+
+    @Test
+    void everyScriptOnTheClasspathIsListed() throws IOException, URISyntaxException {
+        URL dir = SchemaMigrator.class.getResource("/com/visiboard/pc/db/migration/");
+        assumeTrue(dir != null && "file".equals(dir.getProtocol()), "migrations are not on a file classpath");
+        try (Stream<Path> files = Files.list(Paths.get(dir.toURI()))) {
+            Set<String> onDisk = files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.matches("V\\d+__.*\\.sql"))
+                    .collect(Collectors.toSet());
+            assertEquals(onDisk, Set.copyOf(SchemaMigrator.scripts()));
+        }
+    }
+
+    @Test
+    void outboxTableIsOneStatement() throws SQLException {
+        List<String> statements = SchemaMigrator.splitStatements(SchemaMigrator.readScript("V6__firestore_outbox.sql"));
+        String create = statements.get(0);
+        assertTrue(create.startsWith("CREATE TABLE IF NOT EXISTS firestore_outbox"), create);
+        assertTrue(create.contains("next_attempt_at BIGINT NOT NULL"), create);
+        assertTrue(create.trim().endsWith(")"), create);
+    }
+
+    @Test
+    void trailingCommentsAreDropped() {
+        List<String> statements = SchemaMigrator.splitStatements(
+                "CREATE TABLE t (\n" +
+                "    a INT, -- epoch millis; the dispatcher's lease\n" +
+                "    b TEXT -- user's name\n" +
+                ");\n" +
+                "-- whole-line comment; with a semicolon\n" +
+                "SELECT 1; -- done\n");
+        assertEquals(List.of("CREATE TABLE t (\n    a INT, \n    b TEXT \n)", "SELECT 1"), statements);
+    }
+
+    @Test
+    void semicolonsAndDashesInLiteralsAreKept() {
+        List<String> statements = SchemaMigrator.splitStatements(
+                "INSERT INTO t VALUES ('a;b', 'it''s', '--not a comment');\nSELECT 2;");
+        assertEquals(List.of("INSERT INTO t VALUES ('a;b', 'it''s', '--not a comment')", "SELECT 2"), statements);
+    }
+
+    @Test
+    void dollarBodiesAreOneStatement() {
+        String function = "CREATE FUNCTION f() RETURNS trigger AS $$\n" +
+                          "BEGIN\n" +
+                          "    -- the row's id; kept for PostgreSQL\n" +
+                          "    RETURN NEW;\n" +
+                          "END;\n" +
+                          "$$ LANGUAGE plpgsql";
+        List<String> statements = SchemaMigrator.splitStatements(function + ";\nSELECT 3;");
+        assertEquals(List.of(function, "SELECT 3"), statements);
+    }
+
+    private static int parenthesisDepth(String sql) {
+        return countOutsideDollarBodies(sql, '(') - countOutsideDollarBodies(sql, ')');
+    }
+
+    private static int countOutsideDollarBodies(String sql, char target) {
+        int count = 0;
+        boolean inDollar = false;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.startsWith("$$", i)) {
+                inDollar = !inDollar;
+                i++;
+            } else if (!inDollar && sql.charAt(i) == target) {
+                count++;
+            }
+        }
+        return count;
+    }
+}